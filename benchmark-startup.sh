@@ -0,0 +1,56 @@
+#!/bin/bash
+# Compare CLI startup time of the JVM jar and the native executable
+# Usage: ./benchmark-startup.sh [runs] [task]
+#   runs: number of invocations per command (default 10)
+#   task: optional task name to also benchmark 'gepetto run <task> --no-report'
+#
+# Build both distributions first:
+#   ./mvnw clean package && cp target/gepetto-*.jar /tmp/gepetto.jar
+#   ./mvnw -Pnative clean package
+
+set -e
+
+RUNS="${1:-10}"
+TASK="$2"
+SCRIPT_DIR="$(dirname "$0")"
+VERSION=$(cat "$SCRIPT_DIR/.version" | head -1)
+JAR_PATH="${JAR_PATH:-$SCRIPT_DIR/target/gepetto-$VERSION.jar}"
+NATIVE_PATH="${NATIVE_PATH:-$SCRIPT_DIR/target/gepetto}"
+
+# Run a command RUNS times and print the mean and min wall time in milliseconds
+measure() {
+  local label="$1"
+  shift
+  local total=0
+  local min=""
+  for _ in $(seq "$RUNS"); do
+    local start=$(date +%s%N)
+    "$@" > /dev/null 2>&1 || true
+    local elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    total=$(( total + elapsed ))
+    if [ -z "$min" ] || [ "$elapsed" -lt "$min" ]; then
+      min=$elapsed
+    fi
+  done
+  printf "%-28s mean %6d ms   min %6d ms\n" "$label" $(( total / RUNS )) "$min"
+}
+
+echo "Startup benchmark ($RUNS runs per command)"
+
+if [ -f "$JAR_PATH" ]; then
+  measure "jvm    version" java -jar "$JAR_PATH" version
+  if [ -n "$TASK" ]; then
+    measure "jvm    run $TASK" java -jar "$JAR_PATH" run "$TASK" --no-report
+  fi
+else
+  echo "JVM jar not found at $JAR_PATH, skipping"
+fi
+
+if [ -x "$NATIVE_PATH" ]; then
+  measure "native version" "$NATIVE_PATH" version
+  if [ -n "$TASK" ]; then
+    measure "native run $TASK" "$NATIVE_PATH" run "$TASK" --no-report
+  fi
+else
+  echo "Native executable not found at $NATIVE_PATH, skipping"
+fi
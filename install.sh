@@ -17,6 +17,8 @@ MIN_JAVA_VERSION="21"
 INSTALL_DIR="${HOME}/.local/share/${APP_NAME}"
 BIN_DIR="${HOME}/.local/bin"
 JAR_PATH="${INSTALL_DIR}/${APP_NAME}.jar"
+APP_DIR="${INSTALL_DIR}/app"
+CDS_ARCHIVE="${INSTALL_DIR}/${APP_NAME}.jsa"
 
 # Check if running from source directory with target jar
 if [ -f ".version" ] && [ -d "target" ]; then
@@ -95,6 +97,31 @@ fi
 # Make the JAR executable
 chmod +x "${JAR_PATH}"
 
+# Build an AppCDS archive from a training run, so the launcher skips most of the
+# class loading and verification on every start. The archive is tied to the
+# local JVM, so it is built here rather than shipped prebuilt.
+if [ "${GEPETTO_SKIP_CDS}" != "true" ]; then
+  print_info "Building class data sharing archive for faster startup..."
+  rm -rf "${APP_DIR}" "${CDS_ARCHIVE}"
+  if java -Djarmode=tools -jar "${JAR_PATH}" extract --destination "${APP_DIR}" >/dev/null 2>&1; then
+    # The extracted jar is named after the downloaded one, rename it unless it already matches
+    for EXTRACTED_JAR in "${APP_DIR}"/*.jar; do
+      if [ "${EXTRACTED_JAR}" != "${APP_DIR}/${APP_NAME}.jar" ]; then
+        mv "${EXTRACTED_JAR}" "${APP_DIR}/${APP_NAME}.jar"
+      fi
+    done
+    # The training run stops right after the Spring context refresh
+    (cd "${INSTALL_DIR}" && timeout 120 java -XX:ArchiveClassesAtExit="${CDS_ARCHIVE}" -Xlog:cds=off -Xlog:cds+dynamic=off \
+      -Dspring.context.exit=onRefresh -jar "${APP_DIR}/${APP_NAME}.jar" >/dev/null 2>&1) || true
+  fi
+  if [ -f "${CDS_ARCHIVE}" ]; then
+    print_info "Class data sharing archive created at ${CDS_ARCHIVE}"
+  else
+    print_info "Could not build the class data sharing archive, Gepetto will start without it."
+    rm -rf "${APP_DIR}"
+  fi
+fi
+
 # Create wrapper script
 cat > "${BIN_DIR}/${APP_NAME}" << EOF
 #!/bin/bash
@@ -103,7 +130,12 @@ cat > "${BIN_DIR}/${APP_NAME}" << EOF
 SPRING_CONFIG_LOCATION="file:\${HOME}/.gepetto/application.properties"
 export SPRING_CONFIG_ADDITIONAL_LOCATION="\${SPRING_CONFIG_LOCATION}"
 
-java -jar "${JAR_PATH}" "\$@"
+# Use the class data sharing archive when available, it only applies to the extracted jar
+if [ -f "${CDS_ARCHIVE}" ] && [ -f "${APP_DIR}/${APP_NAME}.jar" ]; then
+  exec java -XX:SharedArchiveFile="${CDS_ARCHIVE}" -Xlog:cds=off -Xlog:cds+dynamic=off -jar "${APP_DIR}/${APP_NAME}.jar" "\$@"
+fi
+
+exec java -jar "${JAR_PATH}" "\$@"
 EOF
 
 # Make wrapper script executable
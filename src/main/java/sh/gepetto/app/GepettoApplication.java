@@ -5,9 +5,11 @@ import org.springframework.boot.ExitCodeGenerator;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.context.annotation.Profile;
 
 import sh.gepetto.app.cli.GepettoCommand;
+import sh.gepetto.app.config.NativeHints;
 import picocli.CommandLine;
 
 /**
@@ -17,6 +19,7 @@ import picocli.CommandLine;
  * to write and execute tasks in plain English.
  */
 @SpringBootApplication
+@ImportRuntimeHints(NativeHints.class)
 public class GepettoApplication {
 
 	public static void main(String[] args) {
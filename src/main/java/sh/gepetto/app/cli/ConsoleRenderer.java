@@ -0,0 +1,198 @@
+package sh.gepetto.app.cli;
+
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventSubscriber;
+import sh.gepetto.app.model.TaskResult;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the progress events of task runs on the console.
+ * <p>
+ * Line by line by default, each line prefixed with its task while several tasks run. In
+ * live mode, on a terminal, only step outcomes and messages are logged, and the running
+ * tasks are shown in a status block below the log that is redrawn in place.
+ */
+class ConsoleRenderer implements EventSubscriber, AutoCloseable {
+    private static final long REDRAW_MS = 1000;
+
+    private final PrintStream out;
+    private final boolean live;
+    private final int width;
+
+    // Runs started and not finished yet, by run id, in start order
+    private final Map<String, RunState> runs = new LinkedHashMap<>();
+
+    // Log lines not printed yet in live mode, they go above the status block on the next redraw
+    private final List<String> pending = new ArrayList<>();
+    private int drawnLines;
+    private long lastDraw;
+
+    ConsoleRenderer(PrintStream out, boolean live) {
+        this.out = out;
+        this.live = live;
+        int columns = 120;
+        try {
+            columns = Integer.parseInt(System.getenv().getOrDefault("COLUMNS", "120"));
+        } catch (NumberFormatException e) {
+            // Keep the default width
+        }
+        this.width = columns;
+    }
+
+    /**
+     * Whether the console can be redrawn in place: an interactive, non-dumb terminal
+     */
+    static boolean isTerminal() {
+        String term = System.getenv("TERM");
+        return System.console() != null && term != null && !term.equals("dumb");
+    }
+
+    private static final class RunState {
+        final String task;
+        final int steps;
+        final long started = System.currentTimeMillis();
+        int step;
+        int stepCount = 1;
+        String lastTool;
+        long tokens;
+
+        RunState(String task, int steps) {
+            this.task = task;
+            this.steps = steps;
+        }
+    }
+
+    @Override
+    public synchronized void onEvent(Event event) {
+        RunState run = runs.get(event.runId());
+        switch (event) {
+            case Event.TaskStarted started -> {
+                runs.put(started.runId(), new RunState(started.task(), started.steps()));
+                if (!live) {
+                    log(started.task(), "\n===== STARTING TASK: " + started.task() + " =====\n"
+                            + "Description: " + started.description() + "\n"
+                            + "Total steps: " + started.steps());
+                }
+            }
+            case Event.StepStarted step -> {
+                if (run != null) {
+                    run.step = step.index();
+                    run.stepCount = step.count();
+                    run.lastTool = null;
+                }
+                if (!live) {
+                    int total = run != null ? run.steps : step.index() + step.count();
+                    log(step.task(), step.count() > 1
+                            ? "\n===== STEPS " + (step.index() + 1) + "-" + (step.index() + step.count()) + "/" + total + " (batched) ====="
+                            : "\n===== STEP " + (step.index() + 1) + "/" + total + " " + step.step() + "=====");
+                }
+            }
+            case Event.StepFinished step -> log(step.task(), step.status() == TaskResult.Status.SUCCESS
+                    ? (live ? "" : "\n") + "✅ Step " + (step.index() + 1) + " passed: " + step.details()
+                    : (live ? "" : "\n") + "❌ Step " + (step.index() + 1) + " failed with status: " + step.status()
+                            + (live && step.details() != null ? " (" + step.details() + ")" : ""));
+            case Event.ToolCall call -> {
+                if (run != null) {
+                    run.lastTool = call.tool();
+                }
+                if (!live) {
+                    log(call.task(), (call.replayed() ? "Replayed action " : "Executed action ") + call.tool()
+                            + "(" + call.arguments() + ") in " + call.durationMs() + "ms" + (call.failed() ? ", failed" : ""));
+                }
+            }
+            case Event.Tokens tokens -> {
+                if (run != null) {
+                    run.tokens += tokens.promptTokens() + tokens.completionTokens();
+                }
+            }
+            case Event.Message message -> log(message.task(), message.text());
+            case Event.Span span -> {
+                // Only recorded for traces
+            }
+            case Event.TaskFinished finished -> {
+                if (run != null && !live) {
+                    log(finished.task(), "\n===== TASK EXECUTION COMPLETED =====");
+                }
+                runs.remove(finished.runId());
+            }
+        }
+    }
+
+    private void log(String task, String text) {
+        // Tell the lines of concurrent tasks apart
+        String prefix = task != null && runs.size() > 1 ? "[" + task + "] " : "";
+        StringBuilder sb = new StringBuilder();
+        String[] lines = text.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(lines[i].isEmpty() ? "" : prefix + lines[i]);
+        }
+        if (live) {
+            pending.add(sb.toString());
+        } else {
+            out.println(sb);
+        }
+    }
+
+    @Override
+    public synchronized void onIdle() {
+        if (!live) {
+            out.flush();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (pending.isEmpty() && (drawnLines == 0 && runs.isEmpty() || now - lastDraw < REDRAW_MS)) {
+            return;
+        }
+        redraw(now);
+    }
+
+    private void redraw(long now) {
+        StringBuilder sb = new StringBuilder();
+        if (drawnLines > 0) {
+            // Back to the first line of the status block, and clear it
+            sb.append("\033[").append(drawnLines).append("F\033[J");
+        }
+        for (String line : pending) {
+            sb.append(line).append('\n');
+        }
+        pending.clear();
+
+        drawnLines = 0;
+        for (RunState run : runs.values()) {
+            String step = run.stepCount > 1
+                    ? "steps " + (run.step + 1) + "-" + (run.step + run.stepCount)
+                    : "step " + (run.step + 1);
+            String line = String.format("⏳ %s  %s/%d  %ds  %s tokens%s", run.task, step, run.steps,
+                    (now - run.started) / 1000, formatCount(run.tokens), run.lastTool != null ? "  " + run.lastTool : "");
+            sb.append(line.length() > width ? line.substring(0, width - 1) : line).append('\n');
+            drawnLines++;
+        }
+        out.print(sb);
+        out.flush();
+        lastDraw = now;
+    }
+
+    private static String formatCount(long count) {
+        return count < 1000 ? String.valueOf(count) : String.format("%.1fk", count / 1000.0);
+    }
+
+    /**
+     * Print what is left to print and remove the status block
+     */
+    @Override
+    public synchronized void close() {
+        if (live) {
+            runs.clear();
+            redraw(System.currentTimeMillis());
+        }
+        out.flush();
+    }
+}
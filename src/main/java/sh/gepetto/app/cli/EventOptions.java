@@ -0,0 +1,68 @@
+package sh.gepetto.app.cli;
+
+import picocli.CommandLine.Option;
+import sh.gepetto.app.events.EventBus;
+import sh.gepetto.app.events.JsonLinesWriter;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options choosing how the progress of task runs is shown, shared by the commands running tasks
+ */
+public class EventOptions {
+
+    @Option(names = {"--events"}, description = "Also write progress events as JSON lines to FILE, - writes them to stdout instead of the console output", paramLabel = "FILE")
+    private String eventsFile;
+
+    @Option(names = {"--no-live"}, description = "Print progress line by line, even on a terminal")
+    private boolean noLive;
+
+    /**
+     * Subscribe the console renderer and the JSON lines output, as requested, for the
+     * duration of a command. Closing the subscription prints what is left to print.
+     */
+    EventBus.Subscription subscribe(EventBus eventBus) throws IOException {
+        List<AutoCloseable> outputs = new ArrayList<>();
+        List<EventBus.Subscription> subscriptions = new ArrayList<>();
+        if (!"-".equals(eventsFile)) {
+            ConsoleRenderer renderer = new ConsoleRenderer(System.out, !noLive && ConsoleRenderer.isTerminal());
+            subscriptions.add(eventBus.subscribe(renderer));
+            outputs.add(renderer);
+        }
+        if (eventsFile != null) {
+            Writer writer = "-".equals(eventsFile)
+                    ? new FilterWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                        @Override
+                        public void close() throws IOException {
+                            // Leave stdout open
+                            flush();
+                        }
+                    }
+                    : Files.newBufferedWriter(Path.of(eventsFile));
+            JsonLinesWriter jsonLines = new JsonLinesWriter(writer);
+            subscriptions.add(eventBus.subscribe(jsonLines));
+            outputs.add(jsonLines);
+        }
+
+        return () -> {
+            for (EventBus.Subscription subscription : subscriptions) {
+                subscription.close();
+            }
+            for (AutoCloseable output : outputs) {
+                try {
+                    output.close();
+                } catch (Exception e) {
+                    System.out.println("Warning: Failed to close event output: " + e.getMessage());
+                }
+            }
+        };
+    }
+}
@@ -14,7 +14,7 @@ import picocli.CommandLine.Command;
     description = "AI-powered natural language task execution framework",
     mixinStandardHelpOptions = true,
     versionProvider = VersionProvider.class,
-    subcommands = {RunTaskCommand.class, InitCommand.class, HelpCommand.class, VersionCommand.class}
+    subcommands = {RunTaskCommand.class, WatchCommand.class, LoadCommand.class, HistoryCommand.class, ReportCommand.class, InitCommand.class, HelpCommand.class, VersionCommand.class}
 )
 public class GepettoCommand implements Runnable {
     
@@ -0,0 +1,89 @@
+package sh.gepetto.app.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import sh.gepetto.app.model.RunRecord;
+import sh.gepetto.app.model.TaskResult;
+import sh.gepetto.app.service.RunHistoryService;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Command for querying the run history
+ */
+@Component
+@Command(
+    name = "history",
+    description = "Show run trends, failure rates and durations from the run history"
+)
+public class HistoryCommand implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryCommand.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final RunHistoryService historyService;
+
+    @Parameters(index = "0", arity = "0..1", description = "Name of the task to show, all tasks if omitted")
+    private String taskName;
+
+    @Option(names = {"--days"}, description = "Only include runs from the last N days (default: ${DEFAULT-VALUE})", defaultValue = "30")
+    private int days;
+
+    @Option(names = {"--last"}, description = "Number of most recent runs to list for a task (default: ${DEFAULT-VALUE})", defaultValue = "10")
+    private int last;
+
+    public HistoryCommand(RunHistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<RunRecord> records = historyService.query(taskName, LocalDateTime.now().minusDays(days));
+            if (records.isEmpty()) {
+                System.out.println("No runs recorded in the last " + days + " days");
+                return;
+            }
+
+            System.out.println("\n===== RUN HISTORY (last " + days + " days) =====");
+            System.out.printf("%-30s %6s %8s %10s %10s %10s%n", "Task", "Runs", "Failed", "p50 (ms)", "p95 (ms)", "Max (ms)");
+            Map<String, List<RunRecord>> byTask = records.stream()
+                    .collect(Collectors.groupingBy(RunRecord::getTaskName, TreeMap::new, Collectors.toList()));
+            byTask.forEach((name, runs) -> {
+                long[] durations = runs.stream().mapToLong(RunRecord::getExecutionDurationMs).sorted().toArray();
+                long failed = runs.stream().filter(run -> run.getStatus() != TaskResult.Status.SUCCESS).count();
+                System.out.printf("%-30s %6d %7.1f%% %10d %10d %10d%n",
+                        name, runs.size(), 100.0 * failed / runs.size(),
+                        percentile(durations, 50), percentile(durations, 95), durations[durations.length - 1]);
+            });
+
+            // For a single task, also list the most recent runs
+            if (taskName != null) {
+                System.out.println("\n----- Recent Runs -----");
+                for (RunRecord run : records.subList(Math.max(0, records.size() - last), records.size())) {
+                    System.out.printf("%s  %-7s %8dms  %d/%d steps%n",
+                            run.getExecutionTime().format(DATE_FORMATTER), run.getStatus(),
+                            run.getExecutionDurationMs(), run.getPassedSteps(), run.getSteps());
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error reading run history: {}", e.getMessage());
+            System.out.println("\n❌ Error: " + e.getMessage());
+        }
+    }
+
+    private long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
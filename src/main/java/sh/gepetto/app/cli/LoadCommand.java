@@ -0,0 +1,142 @@
+package sh.gepetto.app.cli;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import sh.gepetto.app.config.ApplicationConfig;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
+import sh.gepetto.app.model.Configuration;
+import sh.gepetto.app.model.TaskDetails;
+import sh.gepetto.app.service.LoadTestService;
+import sh.gepetto.app.service.TaskParser;
+import sh.gepetto.app.tools.BrowserPool;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command running a task as many concurrent users, as a light load test
+ */
+@Component
+@Command(
+    name = "load",
+    description = "Run a task as concurrent users and report step latency percentiles"
+)
+public class LoadCommand implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadCommand.class);
+
+    private final LoadTestService loadTestService;
+    private final TaskParser taskParser;
+    private final ApplicationConfig appConfig;
+    private final BrowserPool browserPool;
+    private final EventBus eventBus;
+
+    @Option(names = {"--users", "-u"}, description = "Number of concurrent users (default: ${DEFAULT-VALUE})", defaultValue = "10", paramLabel = "N")
+    private int users;
+
+    @Option(names = {"--duration", "-t"}, description = "Duration of the test, ramp-up included, e.g. 30s or 5m (default: ${DEFAULT-VALUE})", defaultValue = "1m", paramLabel = "D")
+    private String duration;
+
+    @Option(names = {"--ramp", "-r"}, description = "Time over which the users are started (default: ${DEFAULT-VALUE})", defaultValue = "0s", paramLabel = "R")
+    private String ramp;
+
+    @Option(names = {"--var", "-v"}, description = "Define a variable in format NAME=VALUE (overrides configured variables)", split = ",")
+    private Map<String, String> variables;
+
+    @Mixin
+    private EventOptions eventOptions;
+
+    @Parameters(index = "0", description = "Name of the task to run")
+    private String taskName;
+
+    public LoadCommand(LoadTestService loadTestService, TaskParser taskParser, ApplicationConfig appConfig, BrowserPool browserPool,
+                       EventBus eventBus) {
+        this.loadTestService = loadTestService;
+        this.taskParser = taskParser;
+        this.appConfig = appConfig;
+        this.browserPool = browserPool;
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Path path = taskParser.findTaskFile(taskName);
+            if (path == null) {
+                System.out.println("Error: Task not found: " + taskName);
+                return;
+            }
+            TaskDetails task = taskParser.parseTaskFile(path);
+
+            Configuration config = Configuration.builder()
+                    .variables(new HashMap<>(appConfig.getVariables()))
+                    .batchSize(appConfig.getConfiguration().getBatchSize())
+                    .build();
+            if (variables != null) {
+                config.getVariables().putAll(variables);
+            }
+
+            if (!browserPool.isEnabled() && users > 1) {
+                System.out.println("Warning: gepetto.browser.pool-size is 0, all users share a single browser");
+            }
+
+            Duration testDuration = DurationStyle.detectAndParse(duration);
+            Duration rampDuration = DurationStyle.detectAndParse(ramp);
+            try (EventBus.Subscription subscription = eventOptions.subscribe(eventBus)) {
+                eventBus.publish(new Event.Message(null, null, "\n===== LOAD TEST: " + task.getName() + " =====\n"
+                        + "Users: " + users + ", duration: " + testDuration.toSeconds() + "s, ramp-up: " + rampDuration.toSeconds() + "s"));
+
+                long start = System.currentTimeMillis();
+                LoadTestService.LoadResult result = loadTestService.run(config, task, users, testDuration, rampDuration);
+                eventBus.publish(new Event.Message(null, null, formatLoadResult(result, System.currentTimeMillis() - start)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Error running load test: {}", e.getMessage());
+            System.out.println("\n❌ Error: " + e.getMessage());
+        }
+    }
+
+    static String formatLoadResult(LoadTestService.LoadResult result, long elapsedMs) {
+        StringBuilder sb = new StringBuilder();
+        long iterations = result.iterations().getTotalCount();
+        sb.append("\n===== LOAD TEST RESULT =====\n");
+        sb.append("Task: ").append(result.task().getName()).append("\n");
+        sb.append(String.format("Iterations: %d, failed: %d, throughput: %.2f/min%n",
+                iterations, result.failedIterations().get(), iterations * 60_000.0 / Math.max(1, elapsedMs)));
+
+        sb.append(String.format("%n%-40s %6s %6s %8s %8s %8s %8s %8s%n", "Latency (ms)", "Count", "Errors", "p50", "p90", "p95", "p99", "Max"));
+        sb.append(formatRow("Task", result.iterations(), result.failedIterations().get()));
+        for (int i = 0; i < result.steps().size(); i++) {
+            String step = (i + 1) + ". " + result.task().getSteps().get(i);
+            sb.append(formatRow(step.length() > 40 ? step.substring(0, 37) + "..." : step, result.steps().get(i), result.stepErrors().get(i)));
+        }
+        for (Map.Entry<String, Histogram> tool : result.tools().entrySet()) {
+            String label = "Tool " + tool.getKey();
+            sb.append(formatRow(label.length() > 40 ? label.substring(0, 37) + "..." : label, tool.getValue(),
+                    result.toolErrors().get(tool.getKey()).get()));
+        }
+        sb.append("\n============================\n");
+        return sb.toString();
+    }
+
+    private static String formatRow(String label, Histogram histogram, long errors) {
+        if (histogram.getTotalCount() == 0) {
+            return String.format("%-40s %6d %6d %8s %8s %8s %8s %8s%n", label, 0, errors, "-", "-", "-", "-", "-");
+        }
+        return String.format("%-40s %6d %6d %8d %8d %8d %8d %8d%n", label, histogram.getTotalCount(), errors,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(95),
+                histogram.getValueAtPercentile(99), histogram.getMaxValue());
+    }
+}
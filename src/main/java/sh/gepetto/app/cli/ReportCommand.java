@@ -0,0 +1,54 @@
+package sh.gepetto.app.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import sh.gepetto.app.service.DashboardService;
+import sh.gepetto.app.service.ResultRollupService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Command generating the HTML dashboard of the saved results
+ */
+@Component
+@Command(
+    name = "report",
+    description = "Generate an HTML dashboard of pass rates, durations and tokens from the saved results"
+)
+public class ReportCommand implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportCommand.class);
+
+    private final ResultRollupService rollupService;
+    private final DashboardService dashboardService;
+
+    @Option(names = {"--days"}, description = "Number of days shown (default: ${DEFAULT-VALUE})", defaultValue = "30")
+    private int days;
+
+    @Option(names = {"--output", "-o"}, description = "Dashboard file (default: .gepetto/results/dashboard.html)", paramLabel = "FILE")
+    private Path output;
+
+    public ReportCommand(ResultRollupService rollupService, DashboardService dashboardService) {
+        this.rollupService = rollupService;
+        this.dashboardService = dashboardService;
+    }
+
+    @Override
+    public void run() {
+        try {
+            ResultRollupService.RollupFile rollups = rollupService.update();
+            Path file = output != null ? output : Path.of(PROJECT_DIR, RESULTS_DIR, DASHBOARD_FILE);
+            dashboardService.write(rollups, file, Math.max(1, days));
+            System.out.println("Dashboard saved to: " + file);
+        } catch (IOException e) {
+            logger.error("Error generating report: {}", e.getMessage());
+            System.out.println("\n❌ Error: " + e.getMessage());
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package sh.gepetto.app.cli;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 import sh.gepetto.app.config.ApplicationConfig;
-import sh.gepetto.app.config.Constants;
+import sh.gepetto.app.config.LlmHttpClient;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
+import sh.gepetto.app.events.TraceRecorder;
 import sh.gepetto.app.model.StepResult;
+import sh.gepetto.app.model.StepResultStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -17,29 +21,47 @@ import sh.gepetto.app.model.Configuration;
 import sh.gepetto.app.model.TaskDetails;
 import sh.gepetto.app.model.TaskResult;
 import sh.gepetto.app.service.JUnitReportService;
+import sh.gepetto.app.service.RunHistoryService;
 import sh.gepetto.app.service.TaskExecutionService;
-import sh.gepetto.app.service.TaskParser;
+import sh.gepetto.app.service.TaskGraphService;
+import sh.gepetto.app.tools.BrowserPool;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 
-import static sh.gepetto.app.config.Constants.*;
 /**
  * Command for running tasks
  */
 @Component
 @Command(
     name = "run", 
-    description = "Run a task file"
+    description = "Run one or more task files"
 )
 public class RunTaskCommand implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(RunTaskCommand.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Steps listed in the summary of a run, the earlier ones are only in the reports
+    private static final int SUMMARY_STEPS = StepResultStore.DEFAULT_WINDOW;
     
-    private final TaskParser taskParser;
     private final TaskExecutionService taskExecutionService;
     private final ApplicationConfig appConfig;
     private final JUnitReportService reportService;
+    private final RunHistoryService historyService;
+    private final TaskGraphService taskGraphService;
+    private final LlmHttpClient llmHttpClient;
+    private final BrowserPool browserPool;
+    private final EventBus eventBus;
+    
+    @Mixin
+    private EventOptions eventOptions;
+
+    // Spans of the task runs of this command, written as traces along with the reports
+    private final TraceRecorder traceRecorder = new TraceRecorder();
+
+    // Report of all the tasks of this command, null with --no-report
+    private JUnitReportService.SuiteReport suiteReport;
     
     @Option(names = {"--var", "-v"}, description = "Define a variable in format NAME=VALUE (overrides configured variables)", split = ",")
     private java.util.Map<String, String> variables;
@@ -47,21 +69,41 @@ public class RunTaskCommand implements Runnable {
     @Option(names = {"--debug", "-d"}, description = "Enable debug mode for this run")
     private boolean debug;
     
+    @Option(names = {"--batch"}, description = "Run up to N consecutive steps in a single agent turn", paramLabel = "N")
+    private Integer batchSize;
+    
+    @Option(names = {"--parallel", "-p"}, description = "Run up to N independent tasks at once (default: 1)", paramLabel = "N")
+    private int parallel = 1;
+    
     @Option(names = {"--no-report"}, description = "Disable saving test reports")
     private boolean noReport;
     
-    @picocli.CommandLine.Parameters(index = "0", description = "Name to the task to run")
-    private String taskName;
+    @Option(names = {"--all", "-a"}, description = "Run every task of the project")
+    private boolean all;
+    
+    @Option(names = {"--bundle"}, description = "Run the tasks of a bundle file, streamed one at a time", paramLabel = "FILE")
+    private Path bundle;
+    
+    @picocli.CommandLine.Parameters(arity = "0..*", description = "Names of the tasks to run, fixtures they require run once for all of them")
+    private java.util.List<String> taskNames;
     
     public RunTaskCommand(
-            TaskParser taskParser,
             TaskExecutionService taskExecutionService,
             ApplicationConfig appConfig,
-            JUnitReportService reportService) {
-        this.taskParser = taskParser;
+            JUnitReportService reportService,
+            RunHistoryService historyService,
+            TaskGraphService taskGraphService,
+            LlmHttpClient llmHttpClient,
+            BrowserPool browserPool,
+            EventBus eventBus) {
         this.taskExecutionService = taskExecutionService;
         this.appConfig = appConfig;
         this.reportService = reportService;
+        this.historyService = historyService;
+        this.taskGraphService = taskGraphService;
+        this.llmHttpClient = llmHttpClient;
+        this.browserPool = browserPool;
+        this.eventBus = eventBus;
     }
     
     @Override
@@ -76,6 +118,7 @@ public class RunTaskCommand implements Runnable {
             // Create configuration with variables
             Configuration config = Configuration.builder()
                 .variables(new java.util.HashMap<>())
+                .batchSize(batchSize != null ? batchSize : appConfig.getConfiguration().getBatchSize())
                 .build();
                 
             // Add configured variables if available
@@ -92,38 +135,40 @@ public class RunTaskCommand implements Runnable {
             // Log the variables that will be used
             logger.info("Using variables: {}", config.getVariables());
 
-            // Parse task file
-            Path path = Paths.get(PROJECT_DIR, TASKS_DIR, taskName + ".gpt");
-            if (!Files.exists(path)) {
-                System.out.println("Error: Task  not found: " + path);
-                return;
-            }
-            
-            // Validate file extension
-            if (!taskParser.isValidTaskFile(path)) {
-                System.out.println("Error: Invalid file type. File must have .test or .gpt extension: " + taskName);
+            if (bundle == null && !all && (taskNames == null || taskNames.isEmpty())) {
+                System.out.println("Error: Specify the tasks to run, --all or --bundle");
                 return;
             }
 
-            TaskDetails task = taskParser.parseTaskFile(path);
-            logger.info("Parsed task: {}", task);
+            // Without the pool, concurrent tasks would drive the same browser
+            if (!browserPool.isEnabled() && parallel > 1) {
+                System.out.println("Warning: gepetto.browser.pool-size is 0, all tasks share a single browser, running them one at a time");
+                parallel = 1;
+            }
 
-            // Execute task (detailed progress will be shown during execution)
-            TaskResult result = taskExecutionService.executeTask(config, task);
+            // Fixtures run once for the tasks of this command
+            taskExecutionService.resetFixtures();
 
-            // Print final summary result
-            System.out.println(formatTaskResult(result));
-            
-            // Save reports unless disabled
-            if (!noReport) {
-                try {
-                    Path reportPath = reportService.saveReport(result);
-                    System.out.println("Test report saved to: " + reportPath);
-                } catch (IOException e) {
-                    // Log without stack trace
-                    logger.error("Failed to save test report: {}", e.getMessage());
-                    System.out.println("Warning: Failed to save test report: " + e.getMessage());
+            // Run the tasks and their dependencies, independent ones concurrently
+            LocalDateTime executionTime = LocalDateTime.now();
+            try (EventBus.Subscription subscription = eventOptions.subscribe(eventBus);
+                 EventBus.Subscription traces = noReport ? null : eventBus.subscribe(traceRecorder);
+                 JUnitReportService.SuiteReport suite = noReport ? null : reportService.openSuite(executionTime)) {
+                suiteReport = suite;
+                if (bundle != null) {
+                    taskGraphService.executeBundle(config, bundle, this::report);
+                } else {
+                    Map<String, TaskDetails> tasks = all ? taskGraphService.resolveAll() : taskGraphService.resolve(taskNames);
+                    logger.info("Resolved tasks: {}", tasks.keySet());
+                    taskGraphService.execute(config, tasks, parallel, this::report);
+                }
+                if (suite != null) {
+                    saveSuite(suite);
                 }
+                if (traceRecorder.runs() > 1) {
+                    saveTrace(executionTime);
+                }
+                publishConnectionStats();
             }
         } catch (Exception e) {
             // Log without stack trace
@@ -132,7 +177,74 @@ public class RunTaskCommand implements Runnable {
         }
     }
     
-    private String formatTaskResult(TaskResult result) {
+    private synchronized void report(TaskResult result) {
+        // Print final summary result
+        publish(formatTaskResult(result));
+
+        // Save reports unless disabled
+        if (!noReport) {
+            try {
+                // The spans of the run may still be on their way through the bus
+                eventBus.flush();
+                Path reportPath = reportService.saveReport(result, traceRecorder.spans(result.getRunId()));
+                publish("Test report saved to: " + reportPath);
+            } catch (IOException e) {
+                // Log without stack trace
+                logger.error("Failed to save test report: {}", e.getMessage());
+                publish("Warning: Failed to save test report: " + e.getMessage());
+            }
+
+            try {
+                historyService.record(result);
+            } catch (IOException e) {
+                logger.error("Failed to record run history: {}", e.getMessage());
+                publish("Warning: Failed to record run history: " + e.getMessage());
+            }
+
+            // Written out by the suite's own thread, which then releases the step results
+            suiteReport.add(result);
+        } else {
+            result.releaseStepResults();
+        }
+    }
+
+    /**
+     * Output goes through the event bus while tasks run, so it doesn't interleave with their progress
+     */
+    private void publish(String text) {
+        eventBus.publish(new Event.Message(null, null, text));
+    }
+
+    private void saveSuite(JUnitReportService.SuiteReport suite) {
+        try {
+            suite.close();
+            publish("Suite report saved to: " + suite.getReportFile() + ", summary: " + suite.getSummaryFile());
+        } catch (IOException e) {
+            logger.error("Failed to save suite report: {}", e.getMessage());
+            publish("Warning: Failed to save suite report: " + e.getMessage());
+        }
+    }
+
+    private void saveTrace(LocalDateTime executionTime) {
+        eventBus.flush();
+        try {
+            publish("Trace of all tasks saved to: " + reportService.saveTrace(traceRecorder.spans(), executionTime));
+        } catch (IOException e) {
+            logger.error("Failed to save trace: {}", e.getMessage());
+            publish("Warning: Failed to save trace: " + e.getMessage());
+        }
+    }
+
+    private void publishConnectionStats() {
+        LlmHttpClient.Stats stats = llmHttpClient.stats();
+        logger.info("LLM HTTP client: {}", stats);
+        if (stats.requests() > 0) {
+            publish(String.format("LLM connections: %d opened for %d requests (%.0f%% reused)",
+                    stats.connectionsOpened(), stats.requests(), stats.reuseRatio() * 100));
+        }
+    }
+
+    static String formatTaskResult(TaskResult result) {
         StringBuilder sb = new StringBuilder();
         sb.append("\n===== TASK RESULT =====\n");
         sb.append("Task: ").append(result.getTask().getName()).append("\n");
@@ -146,16 +258,41 @@ public class RunTaskCommand implements Runnable {
         }
 
         sb.append("\n----- Step Results -----\n");
-        for (int i = 0; i < result.getStepResults().size(); i++) {
-            StepResult stepResult = result.getStepResults().get(i);
-            sb.append(i + 1).append(". ").append(stepResult.getStep()).append("\n");
+        int steps = result.getStepResults().size();
+        if (steps > SUMMARY_STEPS) {
+            sb.append("(").append(steps - SUMMARY_STEPS).append(" earlier steps not listed)\n");
+        }
+        int i = 0;
+        StepResult tokens = new StepResult();
+        for (StepResult stepResult : result.getStepResults()) {
+            tokens.setPromptTokens(tokens.getPromptTokens() + stepResult.getPromptTokens());
+            tokens.setCachedTokens(tokens.getCachedTokens() + stepResult.getCachedTokens());
+            tokens.setCompletionTokens(tokens.getCompletionTokens() + stepResult.getCompletionTokens());
+            if (++i <= steps - SUMMARY_STEPS) {
+                continue;
+            }
+            sb.append(i).append(". ").append(stepResult.getStep()).append("\n");
             sb.append("   Status: ").append(stepResult.getStatus()).append("\n");
+            if (stepResult.getModel() != null) {
+                sb.append("   Model: ").append(stepResult.getModel()).append("\n");
+            }
             if (stepResult.getDetails() != null) {
                 sb.append("   Details: ").append(stepResult.getDetails()).append("\n");
             }
+            if (stepResult.getPromptTokens() > 0) {
+                sb.append("   Tokens: ").append(formatTokens(stepResult)).append("\n");
+            }
+        }
+        if (tokens.getPromptTokens() > 0) {
+            sb.append("\nTokens: ").append(formatTokens(tokens)).append("\n");
         }
 
         sb.append("\n=======================\n");
         return sb.toString();
     }
+
+    private static String formatTokens(StepResult stepResult) {
+        return String.format("%d prompt (%d%% cached), %d completion", stepResult.getPromptTokens(),
+                stepResult.getCachedTokens() * 100L / stepResult.getPromptTokens(), stepResult.getCompletionTokens());
+    }
 }
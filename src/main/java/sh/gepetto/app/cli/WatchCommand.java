@@ -0,0 +1,212 @@
+package sh.gepetto.app.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import sh.gepetto.app.config.ApplicationConfig;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
+import sh.gepetto.app.model.Configuration;
+import sh.gepetto.app.model.TaskDetails;
+import sh.gepetto.app.model.TaskResult;
+import sh.gepetto.app.service.TaskExecutionService;
+import sh.gepetto.app.service.TaskParser;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Command re-running tasks as their files change, in a single long-lived process so the
+ * LLM client and MCP servers stay connected between runs
+ */
+@Component
+@Command(
+    name = "watch",
+    description = "Re-run tasks whenever their file or the configuration changes"
+)
+public class WatchCommand implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatchCommand.class);
+
+    private final TaskParser taskParser;
+    private final TaskExecutionService taskExecutionService;
+    private final ApplicationConfig appConfig;
+    private final EventBus eventBus;
+
+    // Last result of each task run in this session, to resume from when steps are appended
+    private final Map<Path, TaskResult> lastResults = new HashMap<>();
+
+    @Option(names = {"--var", "-v"}, description = "Define a variable in format NAME=VALUE (overrides configured variables)", split = ",")
+    private Map<String, String> variables;
+
+    @Option(names = {"--debounce"}, description = "Wait until files settled for this many milliseconds (default: ${DEFAULT-VALUE})", defaultValue = "300")
+    private long debounceMs;
+
+    @Mixin
+    private EventOptions eventOptions;
+
+    @Parameters(arity = "0..*", description = "Names of the tasks to watch, all tasks if omitted")
+    private List<String> taskNames;
+
+    public WatchCommand(TaskParser taskParser, TaskExecutionService taskExecutionService, ApplicationConfig appConfig,
+                        EventBus eventBus) {
+        this.taskParser = taskParser;
+        this.taskExecutionService = taskExecutionService;
+        this.appConfig = appConfig;
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public void run() {
+        Path projectDir = Paths.get(PROJECT_DIR);
+        Path tasksDir = projectDir.resolve(TASKS_DIR);
+        if (!Files.isDirectory(tasksDir)) {
+            System.out.println("Error: Tasks directory not found: " + tasksDir + ", run 'gepetto init' first");
+            return;
+        }
+
+        try (WatchService watcher = FileSystems.getDefault().newWatchService();
+             EventBus.Subscription subscription = eventOptions.subscribe(eventBus)) {
+            tasksDir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            projectDir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            publish("Watching " + tasksDir + " and " + projectDir.resolve(CONFIG_FILE) + " for changes, press Ctrl+C to stop");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                // Editors often write a file several times in a row, wait until it settles
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watcher.take();
+                while (key != null) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() != OVERFLOW) {
+                            changed.add(dir.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                    key = watcher.poll(debounceMs, TimeUnit.MILLISECONDS);
+                }
+
+                for (Path file : tasksToRun(changed, projectDir, tasksDir)) {
+                    runTask(file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Error watching tasks: {}", e.getMessage());
+            System.out.println("\n❌ Error: " + e.getMessage());
+        }
+    }
+
+    private Set<Path> tasksToRun(Set<Path> changed, Path projectDir, Path tasksDir) {
+        Set<Path> tasks = new LinkedHashSet<>();
+        for (Path file : changed) {
+            if (file.equals(projectDir.resolve(CONFIG_FILE))) {
+                // Variables may have changed, run the tasks of this session and their fixtures
+                // again from scratch
+                appConfig.reload();
+                publish("\nConfiguration reloaded");
+                taskExecutionService.resetFixtures();
+                tasks.addAll(lastResults.keySet());
+                lastResults.values().forEach(TaskResult::releaseStepResults);
+                lastResults.clear();
+            } else if (file.getParent().equals(tasksDir) && taskParser.isValidTaskFile(file) && Files.exists(file)) {
+                taskParser.invalidate(file);
+                if (taskNames == null || taskNames.isEmpty() || taskNames.contains(TaskParser.baseName(file))) {
+                    tasks.add(file);
+                }
+
+                // A fixture changed, run it again along with the tasks that start from its state
+                List<Path> dependents = dependents(TaskParser.baseName(file));
+                if (!dependents.isEmpty()) {
+                    publish("\nFixture " + TaskParser.baseName(file) + " changed, running the tasks requiring it again");
+                    taskExecutionService.resetFixtures();
+                    for (Path dependent : dependents) {
+                        lastResults.remove(dependent).releaseStepResults();
+                        tasks.add(dependent);
+                    }
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * The task files run in this session whose chain of required fixtures includes the given one
+     */
+    private List<Path> dependents(String fixture) {
+        List<Path> dependents = new ArrayList<>();
+        for (Map.Entry<Path, TaskResult> entry : lastResults.entrySet()) {
+            Set<String> chain = new HashSet<>();
+            String name = entry.getValue().getTask().getRequires();
+            try {
+                while (name != null && chain.add(name) && !name.equals(fixture)) {
+                    Path path = taskParser.findTaskFile(name);
+                    name = path != null ? taskParser.parseTaskFile(path).getRequires() : null;
+                }
+            } catch (IOException e) {
+                // Reported when the task runs
+                logger.debug("Failed to follow the fixtures of {}: {}", entry.getKey(), e.getMessage());
+            }
+            if (fixture.equals(name)) {
+                dependents.add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    private void runTask(Path file) {
+        try {
+            TaskDetails task = taskParser.parseTaskFile(file);
+            Configuration config = Configuration.builder()
+                    .variables(new HashMap<>(appConfig.getVariables()))
+                    .batchSize(appConfig.getConfiguration().getBatchSize())
+                    .build();
+            if (variables != null) {
+                config.getVariables().putAll(variables);
+            }
+
+            // When steps were only appended, continue from where the previous run ended
+            TaskResult previous = lastResults.get(file);
+            TaskResult result = previous != null ? taskExecutionService.resumeTask(config, previous, task) : null;
+            if (result == null) {
+                result = taskExecutionService.executeTask(config, task);
+            }
+            TaskResult replaced = lastResults.put(file, result);
+            if (replaced != null) {
+                replaced.releaseStepResults();
+            }
+
+            publish(RunTaskCommand.formatTaskResult(result));
+            publish("Watching for changes...");
+        } catch (Exception e) {
+            logger.error("Error running task {}: {}", file, e.getMessage());
+            publish("\n❌ Error: " + e.getMessage());
+        }
+    }
+
+    private void publish(String text) {
+        eventBus.publish(new Event.Message(null, null, text));
+    }
+}
@@ -38,6 +38,13 @@ public class ApplicationConfig {
         }
     }
 
+    /**
+     * Load the configuration file again, e.g. after it was edited while watching
+     */
+    public void reload() {
+        init();
+    }
+
     public String getVariable(String name) {
         if (configuration.getVariables() == null) {
             return null;
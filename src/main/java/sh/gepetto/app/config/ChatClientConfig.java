@@ -2,27 +2,23 @@ package sh.gepetto.app.config;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
-import org.springframework.ai.support.ToolCallbacks;
-import org.springframework.ai.tool.ToolCallback;
-import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import sh.gepetto.app.tools.ControlTools;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 @Configuration
 public class ChatClientConfig {
 
     @Bean
-    public ChatClient defaultChatClient(ChatModel chatModel,  ToolCallbackProvider tools) {
-        List<ToolCallback> toolCallbacks = new ArrayList<>(Arrays.asList(tools.getToolCallbacks()));
-        toolCallbacks.addAll(Arrays.asList(ToolCallbacks.from(new ControlTools())));
-
+    public ChatClient defaultChatClient(ChatModel chatModel) {
+        // Tools are attached per request by the operator, so each task run can use its own browser session
         return ChatClient.builder(chatModel)
-                .defaultToolCallbacks(toolCallbacks)
                 .build();
     }
+
+    @Bean
+    public RestClientCustomizer llmRestClientCustomizer(LlmHttpClient llmHttpClient) {
+        // The default chat model shares the connection pool of the model providers
+        return builder -> llmHttpClient.configure(builder, null);
+    }
 }
@@ -1,9 +1,22 @@
 package sh.gepetto.app.config;
 
+import java.util.List;
+
 public class Constants {
     public static final String PROJECT_DIR = ".gepetto";
     public static final String TASKS_DIR = "tasks";
     public static final String RESULTS_DIR = "results";
+    public static final String CACHE_DIR = "cache";
+    public static final String HISTORY_DIR = "history";
+    public static final String HISTORY_RUNS_FILE = "runs.dat";
+    public static final String HISTORY_TASKS_FILE = "tasks.idx";
+    public static final String HISTORY_TASK_RUNS_FILE = "runs-%d.idx";
+    public static final String ACTIONS_CACHE_DIR = "actions";
+    public static final String TASKS_CACHE_FILE = "tasks.json";
+    public static final String ROLLUPS_CACHE_FILE = "rollups.json";
+    public static final String DASHBOARD_FILE = "dashboard.html";
+    public static final String FIXTURES_DIR = "fixtures";
+    public static final List<String> TASK_FILE_EXTENSIONS = List.of(".gpt", ".task", ".test", ".yaml", ".yml", ".json");
     public static final String CONFIG_FILENAME = "config.yaml";
     public static final String SAMPLE_TASK_FILENAME = "weather.gpt";
     public static final String CONFIG_FILE = "config.yaml";
@@ -0,0 +1,139 @@
+package sh.gepetto.app.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The HTTP client all LLM requests go through. Connections are pooled and kept alive, so
+ * only the first requests to a server pay for the TCP and TLS handshakes.
+ */
+@Slf4j
+@Component
+public class LlmHttpClient {
+
+    public record Stats(long requests, long requestsOnNewConnection, long connectionsOpened, int leased, int available, int max) {
+        /**
+         * Share of the requests sent over an already open connection
+         */
+        public double reuseRatio() {
+            return requests == 0 ? 0 : 1 - (double) requestsOnNewConnection / requests;
+        }
+    }
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Duration readTimeout;
+    private final int prewarmConnections;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestsOnNewConnection = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    // Set while the current thread sends an LLM request, to tell its connections from pre-warmed ones
+    private final ThreadLocal<Boolean> inRequest = ThreadLocal.withInitial(() -> false);
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+
+    public LlmHttpClient(@Value("${gepetto.http.pool-size:20}") int poolSize,
+                         @Value("${gepetto.http.connect-timeout:5s}") Duration connectTimeout,
+                         @Value("${gepetto.http.read-timeout:5m}") Duration readTimeout,
+                         @Value("${gepetto.http.keep-alive:2m}") Duration keepAlive,
+                         @Value("${gepetto.http.prewarm-connections:2}") int prewarmConnections) {
+        this.readTimeout = readTimeout;
+        this.prewarmConnections = prewarmConnections;
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(poolSize)
+                .setMaxConnPerRoute(poolSize)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .setConnectionFactory(socket -> {
+                    connectionsOpened.incrementAndGet();
+                    if (inRequest.get()) {
+                        requestsOnNewConnection.incrementAndGet();
+                    }
+                    return ManagedHttpClientConnectionFactory.INSTANCE.createConnection(socket);
+                })
+                .build();
+        // Servers rarely advertise a keep-alive duration, keep idle connections for a fixed time instead
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .build();
+    }
+
+    /**
+     * Make a RestClient send its requests through the shared connection pool
+     *
+     * @param builder     the builder to configure
+     * @param readTimeout the read timeout of its requests, or null for the default one
+     * @return the builder
+     */
+    public RestClient.Builder configure(RestClient.Builder builder, Duration readTimeout) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout != null ? readTimeout : this.readTimeout);
+        return builder
+                .requestFactory(requestFactory)
+                .requestInterceptor((request, body, execution) -> {
+                    requests.incrementAndGet();
+                    inRequest.set(true);
+                    try {
+                        return execution.execute(request, body);
+                    } finally {
+                        inRequest.set(false);
+                    }
+                });
+    }
+
+    /**
+     * Open connections to the given servers in the background, so they are ready by the
+     * time the first steps are sent. Only the first call has an effect.
+     */
+    public void prewarm(Collection<String> baseUrls) {
+        if (prewarmConnections <= 0 || !warmedUp.compareAndSet(false, true)) {
+            return;
+        }
+        for (String baseUrl : baseUrls) {
+            for (int i = 0; i < prewarmConnections; i++) {
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        httpClient.execute(new HttpHead(baseUrl), response -> null);
+                    } catch (IOException e) {
+                        log.debug("Failed to pre-warm connection to {}: {}", baseUrl, e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    public Stats stats() {
+        PoolStats poolStats = connectionManager.getTotalStats();
+        return new Stats(requests.get(), requestsOnNewConnection.get(), connectionsOpened.get(), poolStats.getLeased(), poolStats.getAvailable(), poolStats.getMax());
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+}
@@ -0,0 +1,32 @@
+package sh.gepetto.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Additional OpenAI-compatible model providers, e.g. a local Ollama or llama.cpp server,
+ * declared as gepetto.providers.&lt;name&gt;.base-url=...
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gepetto")
+public class ModelProviderProperties {
+
+    private Map<String, Provider> providers = new LinkedHashMap<>();
+
+    @Data
+    public static class Provider {
+        // Root URL of the server, without the /v1/chat/completions path
+        private String baseUrl;
+        // Local servers usually ignore the key, but the client requires one
+        private String apiKey = "none";
+        private String completionsPath = "/v1/chat/completions";
+        // Local models can be slow to answer, overrides gepetto.http.read-timeout
+        private Duration readTimeout;
+    }
+}
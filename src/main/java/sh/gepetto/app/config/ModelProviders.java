@@ -0,0 +1,90 @@
+package sh.gepetto.app.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the model references of the model ladder and task files to the chat client
+ * serving them. A reference prefixed with the name of a configured provider, such as
+ * {@code local/llama3.2}, goes to that provider; any other one to the default chat model.
+ */
+@Slf4j
+@Component
+public class ModelProviders {
+
+    public record Route(ChatClient chatClient, String model) {}
+
+    private final ObjectProvider<ChatClient> defaultChatClient;
+    private final ModelProviderProperties properties;
+    private final LlmHttpClient httpClient;
+    private final String defaultBaseUrl;
+    private final Map<String, ChatClient> chatClients = new ConcurrentHashMap<>();
+
+    public ModelProviders(ObjectProvider<ChatClient> defaultChatClient,
+                          ModelProviderProperties properties,
+                          LlmHttpClient httpClient,
+                          @Value("${spring.ai.openai.base-url:https://api.openai.com}") String defaultBaseUrl) {
+        this.defaultChatClient = defaultChatClient;
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.defaultBaseUrl = defaultBaseUrl;
+    }
+
+    /**
+     * Find the chat client serving a model reference
+     *
+     * @param model the model reference, optionally prefixed with a provider name
+     * @return the chat client and the model name to request from it
+     */
+    public Route route(String model) {
+        int slash = model.indexOf('/');
+        if (slash > 0) {
+            String name = model.substring(0, slash);
+            ModelProviderProperties.Provider provider = properties.getProviders().get(name);
+            if (provider != null) {
+                return new Route(chatClients.computeIfAbsent(name, n -> createChatClient(n, provider)), model.substring(slash + 1));
+            }
+        }
+        return new Route(defaultChatClient.getObject(), model);
+    }
+
+    /**
+     * Open connections in the background to the servers of the given models
+     */
+    public void prewarm(Collection<String> models) {
+        Set<String> baseUrls = new LinkedHashSet<>();
+        for (String model : models) {
+            int slash = model.indexOf('/');
+            ModelProviderProperties.Provider provider = slash > 0 ? properties.getProviders().get(model.substring(0, slash)) : null;
+            baseUrls.add(provider != null && provider.getBaseUrl() != null ? provider.getBaseUrl() : defaultBaseUrl);
+        }
+        httpClient.prewarm(baseUrls);
+    }
+
+    private ChatClient createChatClient(String name, ModelProviderProperties.Provider provider) {
+        if (provider.getBaseUrl() == null) {
+            throw new IllegalStateException("No base-url configured for model provider '" + name + "'");
+        }
+        log.info("Connecting model provider '{}' at {}", name, provider.getBaseUrl());
+
+        OpenAiApi api = OpenAiApi.builder()
+                .baseUrl(provider.getBaseUrl())
+                .apiKey(provider.getApiKey())
+                .completionsPath(provider.getCompletionsPath())
+                .restClientBuilder(httpClient.configure(RestClient.builder(), provider.getReadTimeout()))
+                .build();
+        return ChatClient.builder(OpenAiChatModel.builder().openAiApi(api).build()).build();
+    }
+}
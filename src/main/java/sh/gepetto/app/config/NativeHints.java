@@ -0,0 +1,71 @@
+package sh.gepetto.app.config;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.model.Configuration;
+import sh.gepetto.app.model.DailyRollup;
+import sh.gepetto.app.model.RunRecord;
+import sh.gepetto.app.model.StepResult;
+import sh.gepetto.app.model.TaskDetails;
+import sh.gepetto.app.model.TaskResult;
+import sh.gepetto.app.service.ResultRollupService;
+import sh.gepetto.app.service.TaskCacheService;
+import sh.gepetto.app.service.TaskSpec;
+import sh.gepetto.app.tools.ControlTools;
+
+/**
+ * Reachability hints for the native image.
+ * <p>
+ * Spring AOT covers the beans, and picocli-codegen the command options. What's left
+ * is what gets bound through reflection at runtime: the models Jackson reads and
+ * writes (config.yaml, tool arguments, caches, progress events), the {@code @Tool} methods Spring AI
+ * discovers on {@link ControlTools}, and the classpath resources.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> type : new Class<?>[] {
+                Configuration.class,
+                Configuration.ConfigurationBuilder.class,
+                TaskDetails.class,
+                TaskResult.class,
+                TaskResult.Status.class,
+                StepResult.class,
+                RunRecord.class,
+                DailyRollup.class,
+                ResultRollupService.RollupFile.class,
+                ResultRollupService.Watermark.class,
+                TaskCacheService.Entry.class,
+                TaskCacheService.CacheFile.class,
+                TaskSpec.class,
+                TaskSpec.Step.class,
+                ControlTools.CompleteActionResult.class,
+                ControlTools.CompleteStepsResult.class,
+                Event.TaskStarted.class,
+                Event.TaskFinished.class,
+                Event.StepStarted.class,
+                Event.StepFinished.class,
+                Event.ToolCall.class,
+                Event.Tokens.class,
+                Event.Message.class,
+                Event.Span.class,
+                AssistantMessage.ToolCall.class}) {
+            hints.reflection().registerType(type,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_DECLARED_METHODS,
+                    MemberCategory.DECLARED_FIELDS);
+        }
+
+        // Tool methods are looked up by annotation and invoked reflectively
+        hints.reflection().registerType(ControlTools.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                MemberCategory.INVOKE_DECLARED_METHODS);
+
+        hints.resources().registerPattern("prompts/*.st");
+        hints.resources().registerPattern("mcp-servers-config.json");
+    }
+}
@@ -0,0 +1,72 @@
+package sh.gepetto.app.events;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes spans in the Trace Event format read by Perfetto and chrome://tracing. Each task
+ * run gets its own track, named after its task, so concurrent tasks show side by side and
+ * the spans of a run nest by time within its track.
+ */
+public final class ChromeTrace {
+    private static final JsonFactory JSON = new ObjectMapper().getFactory();
+
+    private ChromeTrace() {
+    }
+
+    public static void write(Writer out, List<Event.Span> spans) throws IOException {
+        // Tracks in the order of the runs' first span
+        Map<String, Integer> tracks = new LinkedHashMap<>();
+        Map<String, String> trackNames = new HashMap<>();
+        Map<String, Integer> runsPerTask = new HashMap<>();
+        for (Event.Span span : spans.stream().sorted(Comparator.comparingLong(Event.Span::startMicros)).toList()) {
+            if (!tracks.containsKey(span.runId())) {
+                tracks.put(span.runId(), tracks.size() + 1);
+                int run = runsPerTask.merge(span.task(), 1, Integer::sum);
+                trackNames.put(span.runId(), run > 1 ? span.task() + " #" + run : span.task());
+            }
+        }
+
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("displayTimeUnit", "ms");
+            json.writeArrayFieldStart("traceEvents");
+            for (Map.Entry<String, Integer> track : tracks.entrySet()) {
+                json.writeStartObject();
+                json.writeStringField("name", "thread_name");
+                json.writeStringField("ph", "M");
+                json.writeNumberField("pid", 1);
+                json.writeNumberField("tid", track.getValue());
+                json.writeObjectFieldStart("args");
+                json.writeStringField("name", trackNames.get(track.getKey()));
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            for (Event.Span span : spans) {
+                json.writeStartObject();
+                json.writeStringField("name", span.name());
+                json.writeStringField("cat", span.category());
+                json.writeStringField("ph", "X");
+                json.writeNumberField("ts", span.startMicros());
+                json.writeNumberField("dur", span.durationMicros());
+                json.writeNumberField("pid", 1);
+                json.writeNumberField("tid", tracks.get(span.runId()));
+                if (!span.args().isEmpty()) {
+                    json.writeObjectField("args", span.args());
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package sh.gepetto.app.events;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import sh.gepetto.app.model.TaskResult;
+
+import java.util.Map;
+
+/**
+ * Progress of task runs, published on the {@link EventBus}. Events of a run carry its id
+ * and task name, the timestamp is in epoch milliseconds.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = Event.TaskStarted.class, name = "task_started"),
+        @JsonSubTypes.Type(value = Event.TaskFinished.class, name = "task_finished"),
+        @JsonSubTypes.Type(value = Event.StepStarted.class, name = "step_started"),
+        @JsonSubTypes.Type(value = Event.StepFinished.class, name = "step_finished"),
+        @JsonSubTypes.Type(value = Event.ToolCall.class, name = "tool_call"),
+        @JsonSubTypes.Type(value = Event.Tokens.class, name = "tokens"),
+        @JsonSubTypes.Type(value = Event.Message.class, name = "message"),
+        @JsonSubTypes.Type(value = Event.Span.class, name = "span")
+})
+public sealed interface Event {
+
+    String runId();
+
+    String task();
+
+    long timestamp();
+
+    record TaskStarted(String runId, String task, long timestamp, String description, int steps) implements Event {
+        public TaskStarted(String runId, String task, String description, int steps) {
+            this(runId, task, System.currentTimeMillis(), description, steps);
+        }
+    }
+
+    record TaskFinished(String runId, String task, long timestamp, TaskResult.Status status, String error,
+                        long durationMs) implements Event {
+        public TaskFinished(String runId, String task, TaskResult.Status status, String error, long durationMs) {
+            this(runId, task, System.currentTimeMillis(), status, error, durationMs);
+        }
+    }
+
+    /**
+     * A step, or the first of a batch of steps, started. The index is zero-based.
+     */
+    record StepStarted(String runId, String task, long timestamp, int index, int count, String step) implements Event {
+        public StepStarted(String runId, String task, int index, int count, String step) {
+            this(runId, task, System.currentTimeMillis(), index, count, step);
+        }
+    }
+
+    record StepFinished(String runId, String task, long timestamp, int index, String step, TaskResult.Status status,
+                        String details, String model, long durationMs) implements Event {
+        public StepFinished(String runId, String task, int index, String step, TaskResult.Status status,
+                            String details, String model, long durationMs) {
+            this(runId, task, System.currentTimeMillis(), index, step, status, details, model, durationMs);
+        }
+    }
+
+    /**
+     * A tool call completed, either requested by the model or replayed from the action cache
+     */
+    record ToolCall(String runId, String task, long timestamp, String tool, String arguments, boolean replayed,
+                    boolean failed, long durationMs) implements Event {
+        public ToolCall(String runId, String task, String tool, String arguments, boolean replayed, boolean failed, long durationMs) {
+            this(runId, task, System.currentTimeMillis(), tool, arguments, replayed, failed, durationMs);
+        }
+    }
+
+    /**
+     * Token usage of a single LLM call
+     */
+    record Tokens(String runId, String task, long timestamp, String model, int promptTokens, int cachedTokens,
+                  int completionTokens) implements Event {
+        public Tokens(String runId, String task, String model, int promptTokens, int cachedTokens, int completionTokens) {
+            this(runId, task, System.currentTimeMillis(), model, promptTokens, cachedTokens, completionTokens);
+        }
+    }
+
+    /**
+     * Free text for the console, the run id and task are null when not about a run
+     */
+    record Message(String runId, String task, long timestamp, String text) implements Event {
+        public Message(String runId, String task, String text) {
+            this(runId, task, System.currentTimeMillis(), text);
+        }
+    }
+
+    /**
+     * A timed section of a task run, such as a step, an LLM call or a tool call, published
+     * when it ends. Start and duration are in microseconds, the start since the epoch.
+     */
+    record Span(String runId, String task, long timestamp, String category, String name, long startMicros,
+                long durationMicros, Map<String, Object> args) implements Event {
+    }
+}
@@ -0,0 +1,163 @@
+package sh.gepetto.app.events;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the progress events of task runs to subscribers such as the console renderer.
+ * <p>
+ * Publishing only appends to a lock-free queue, a single dispatcher thread delivers the
+ * events in order. Execution threads therefore never wait on console or file output, and
+ * subscribers never need to be thread-safe.
+ */
+@Slf4j
+@Component
+public class EventBus {
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final List<EventSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile Thread dispatcher;
+
+    public void publish(Event event) {
+        queue.add(event);
+        published.incrementAndGet();
+        LockSupport.unpark(dispatcher());
+    }
+
+    /**
+     * Start timing a span of a task run, published when closed
+     */
+    public OpenSpan span(String runId, String task, String category, String name) {
+        return new OpenSpan(runId, task, category, name);
+    }
+
+    /**
+     * Deliver the events published from now on to a subscriber, until the returned handle
+     * is closed. Closing it first delivers the events already published.
+     */
+    public Subscription subscribe(EventSubscriber subscriber) {
+        dispatcher();
+        subscribers.add(subscriber);
+        return () -> {
+            flush();
+            subscribers.remove(subscriber);
+        };
+    }
+
+    /**
+     * Wait until the events published so far were delivered
+     */
+    public void flush() {
+        long target = published.get();
+        while (delivered.get() < target && Thread.currentThread() != dispatcher) {
+            LockSupport.unpark(dispatcher);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private Thread dispatcher() {
+        if (dispatcher == null) {
+            synchronized (this) {
+                if (dispatcher == null) {
+                    dispatcher = Thread.ofPlatform().name("gepetto-events").daemon().start(this::dispatch);
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    private void dispatch() {
+        while (true) {
+            Event event;
+            while ((event = queue.poll()) != null) {
+                for (EventSubscriber subscriber : subscribers) {
+                    try {
+                        subscriber.onEvent(event);
+                    } catch (RuntimeException e) {
+                        log.warn("Event subscriber failed on {}: {}", event.getClass().getSimpleName(), e.getMessage());
+                    }
+                }
+                delivered.incrementAndGet();
+            }
+            for (EventSubscriber subscriber : subscribers) {
+                try {
+                    subscriber.onIdle();
+                } catch (RuntimeException e) {
+                    log.warn("Event subscriber failed: {}", e.getMessage());
+                }
+            }
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    /**
+     * A span being timed, on the monotonic clock for its duration
+     */
+    public final class OpenSpan implements AutoCloseable {
+        private final String runId;
+        private final String task;
+        private final String category;
+        private final String name;
+        private final long startMicros;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Object> args = new LinkedHashMap<>();
+        private Event.Span span;
+
+        private OpenSpan(String runId, String task, String category, String name) {
+            this.runId = runId;
+            this.task = task;
+            this.category = category;
+            this.name = name;
+            Instant now = Instant.now();
+            this.startMicros = now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+        }
+
+        /**
+         * Attach a value to the span, shown along with it in trace viewers. Null values are left out.
+         */
+        public OpenSpan arg(String key, Object value) {
+            if (value != null) {
+                args.put(key, value instanceof Number || value instanceof Boolean ? value : value.toString());
+            }
+            return this;
+        }
+
+        /**
+         * End the span and publish it, once
+         */
+        public Event.Span end() {
+            if (span == null) {
+                span = new Event.Span(runId, task, System.currentTimeMillis(), category, name, startMicros,
+                        (System.nanoTime() - startNanos) / 1000, Collections.unmodifiableMap(args));
+                publish(span);
+            }
+            return span;
+        }
+
+        @Override
+        public void close() {
+            end();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
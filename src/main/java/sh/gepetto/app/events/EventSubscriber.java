@@ -0,0 +1,16 @@
+package sh.gepetto.app.events;
+
+/**
+ * Receives the events of the {@link EventBus}, always on its dispatcher thread
+ */
+public interface EventSubscriber {
+
+    void onEvent(Event event);
+
+    /**
+     * Called once the pending events were delivered, and periodically while idle, e.g. to
+     * redraw a live view or flush an output
+     */
+    default void onIdle() {
+    }
+}
@@ -0,0 +1,47 @@
+package sh.gepetto.app.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes every event as a line of JSON, its kind in the {@code type} property, for other
+ * tools to consume the progress of a run
+ */
+public class JsonLinesWriter implements EventSubscriber, AutoCloseable {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Writer out;
+
+    public JsonLinesWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void onEvent(Event event) {
+        try {
+            out.write(objectMapper.writeValueAsString(event));
+            out.write('\n');
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void onIdle() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
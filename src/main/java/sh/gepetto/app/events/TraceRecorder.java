@@ -0,0 +1,38 @@
+package sh.gepetto.app.events;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the spans of task runs, by run id, to write them as traces once the runs completed
+ */
+public class TraceRecorder implements EventSubscriber {
+    private final Map<String, List<Event.Span>> spans = new LinkedHashMap<>();
+
+    @Override
+    public synchronized void onEvent(Event event) {
+        if (event instanceof Event.Span span && span.runId() != null) {
+            spans.computeIfAbsent(span.runId(), runId -> new ArrayList<>()).add(span);
+        }
+    }
+
+    /**
+     * The spans of a run delivered so far, flush the bus first to get all of them
+     */
+    public synchronized List<Event.Span> spans(String runId) {
+        return List.copyOf(spans.getOrDefault(runId, List.of()));
+    }
+
+    /**
+     * The spans of all runs, the runs in the order their first span ended
+     */
+    public synchronized List<Event.Span> spans() {
+        return spans.values().stream().flatMap(List::stream).toList();
+    }
+
+    public synchronized int runs() {
+        return spans.size();
+    }
+}
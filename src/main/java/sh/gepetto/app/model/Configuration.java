@@ -23,6 +23,9 @@ public class Configuration {
     @Builder.Default
     private boolean debug = false;
 
+    @Builder.Default
+    private int batchSize = 1;
+
     @Builder.Default
     private java.util.Map<String, String> variables = new java.util.HashMap<>();
 
@@ -31,6 +34,7 @@ public class Configuration {
         return "Configuration{" +
                 "variables=" + variables +
                 ", debug=" + debug +
+                ", batchSize=" + batchSize +
                 '}';
     }
 }
\ No newline at end of file
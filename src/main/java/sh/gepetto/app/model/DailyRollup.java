@@ -0,0 +1,51 @@
+package sh.gepetto.app.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+
+/**
+ * Aggregates of the runs of a task on one day, as kept in .gepetto/cache/rollups.json
+ */
+@Data
+public class DailyRollup {
+    private int runs;
+    private int passed;
+    private int failed;
+    private int errors;
+    private int skipped;
+    private int retries;
+    private long promptTokens;
+    private long cachedTokens;
+    private long completionTokens;
+
+    // Run durations in milliseconds, kept as a histogram so days can be merged into percentiles
+    @JsonIgnore
+    private Histogram durations = new Histogram(3);
+
+    /**
+     * Fold in the run durations from another rollup
+     */
+    public void addDurations(DailyRollup other) {
+        durations.add(other.durations);
+    }
+
+    /**
+     * The duration histogram in its compressed form, Base64 encoded
+     */
+    public String getEncodedDurations() {
+        ByteBuffer buffer = ByteBuffer.allocate(durations.getNeededByteBufferCapacity());
+        int length = durations.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    public void setEncodedDurations(String encoded) throws DataFormatException {
+        durations = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)), 0);
+        durations.setAutoResize(true);
+    }
+}
@@ -0,0 +1,20 @@
+package sh.gepetto.app.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single task run as stored in the run history
+ */
+@Data
+@Builder
+public class RunRecord {
+    private String taskName;
+    private LocalDateTime executionTime;
+    private long executionDurationMs;
+    private TaskResult.Status status;
+    private int steps;
+    private int passedSteps;
+}
@@ -1,13 +1,26 @@
 package sh.gepetto.app.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class StepResult {
     private String step;
     private TaskResult.Status status;
     private String details;
     private String screenshot;
+    private String model;
+    // Wall-clock time of the step, the steps of a batch share the time of its turn evenly
+    private long durationMs;
+    // Token usage of all the LLM calls made for the step, cached tokens are part of the prompt tokens
+    private int promptTokens;
+    private int cachedTokens;
+    private int completionTokens;
+    // Attempts that didn't make it before this result: diverged replays and escalations to a larger model
+    private int retries;
 }
\ No newline at end of file
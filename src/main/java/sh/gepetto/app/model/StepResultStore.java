@@ -0,0 +1,197 @@
+package sh.gepetto.app.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Step results of a task run. The most recent results are kept in memory, older ones
+ * are spilled to an append-only JSON lines file, so very long runs keep a flat heap.
+ * <p>
+ * Random access to a spilled result reads it back from disk, iterating reads the file
+ * in chunks. Only appending is supported. Closing the store deletes the spill file
+ * once the results have been reported, only the recent results remain readable then.
+ */
+public class StepResultStore extends AbstractList<StepResult> implements AutoCloseable {
+    public static final int DEFAULT_WINDOW = 100;
+
+    // Spilled results read back at once when iterating
+    private static final int READ_CHUNK = 32;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Deletes the spill file of a store dropped without being closed
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final int window;
+    private final List<StepResult> recent = new ArrayList<>();
+
+    // Start offset of each spilled result in the spill file, plus the end of the file
+    private long[] offsets = new long[] {0};
+    private int spilled;
+    private Path spillFile;
+    private Cleaner.Cleanable spillFileCleanup;
+    private boolean closed;
+
+    public StepResultStore() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window the number of most recent results kept in memory
+     */
+    public StepResultStore(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    @Override
+    public synchronized boolean add(StepResult stepResult) {
+        recent.add(stepResult);
+        if (recent.size() > window) {
+            spill(recent.remove(0));
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized StepResult get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        if (index >= spilled) {
+            return recent.get(index - spilled);
+        }
+        return readSpilled(index, index + 1).get(0);
+    }
+
+    @Override
+    public synchronized int size() {
+        return spilled + recent.size();
+    }
+
+    /**
+     * Iterate over the results, reading the spilled ones from disk a chunk at a time. The
+     * spill file is only open while a chunk is read, so an iteration left unfinished holds
+     * no file.
+     */
+    @Override
+    public Iterator<StepResult> iterator() {
+        int spilledAtStart;
+        List<StepResult> recentAtStart;
+        synchronized (this) {
+            if (spilled > 0) {
+                checkOpen();
+            }
+            spilledAtStart = spilled;
+            recentAtStart = List.copyOf(recent);
+        }
+
+        return new Iterator<>() {
+            private List<StepResult> chunk = List.of();
+            private int chunkStart;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < spilledAtStart + recentAtStart.size();
+            }
+
+            @Override
+            public StepResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (position >= spilledAtStart) {
+                    return recentAtStart.get(position++ - spilledAtStart);
+                }
+                if (position - chunkStart >= chunk.size()) {
+                    chunkStart = position;
+                    chunk = readSpilled(position, Math.min(position + READ_CHUNK, spilledAtStart));
+                }
+                return chunk.get(position++ - chunkStart);
+            }
+        };
+    }
+
+    /**
+     * Delete the spill file, once nothing reads the spilled results anymore
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (spillFileCleanup != null) {
+            spillFileCleanup.clean();
+        }
+    }
+
+    /**
+     * Read back the spilled results in [from, to) with a single read of the spill file
+     */
+    private synchronized List<StepResult> readSpilled(int from, int to) {
+        checkOpen();
+        try (RandomAccessFile file = new RandomAccessFile(spillFile.toFile(), "r")) {
+            byte[] lines = new byte[(int) (offsets[to] - offsets[from])];
+            file.seek(offsets[from]);
+            file.readFully(lines);
+
+            List<StepResult> stepResults = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int offset = (int) (offsets[i] - offsets[from]);
+                stepResults.add(objectMapper.readValue(lines, offset, (int) (offsets[i + 1] - offsets[i]), StepResult.class));
+            }
+            return stepResults;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Spilled step results were released");
+        }
+    }
+
+    private void spill(StepResult stepResult) {
+        checkOpen();
+        try {
+            if (spillFile == null) {
+                spillFile = Files.createTempFile("gepetto-steps-", ".jsonl");
+                Path file = spillFile;
+                spillFileCleanup = cleaner.register(this, () -> {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Left in the temporary directory
+                    }
+                });
+            }
+            byte[] line = (objectMapper.writeValueAsString(stepResult) + "\n").getBytes(StandardCharsets.UTF_8);
+            try (OutputStream output = Files.newOutputStream(spillFile, StandardOpenOption.APPEND)) {
+                output.write(line);
+            }
+
+            if (spilled + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[spilled + 1] = offsets[spilled] + line.length;
+            spilled++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package sh.gepetto.app.model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a task written in natural language
@@ -13,11 +16,18 @@ public class TaskDetails {
     private List<String> tags;
     private String author;
     private LocalDateTime created;
+    private String requires;
+    private List<String> dependsOn;
+    private List<String> tools;
+    private Map<String, String> metadata;
     private List<String> steps;
+    private Map<Integer, Map<String, String>> stepOptions;
 
     public TaskDetails() {
         this.tags = new ArrayList<>();
         this.steps = new ArrayList<>();
+        this.stepOptions = new HashMap<>();
+        this.metadata = new LinkedHashMap<>();
     }
 
     public TaskDetails(String name, String description) {
@@ -66,6 +76,51 @@ public class TaskDetails {
         this.created = created;
     }
 
+    /**
+     * Name of the fixture task that must run first, its browser state is the starting
+     * point of this task
+     */
+    public String getRequires() {
+        return requires;
+    }
+
+    public void setRequires(String requires) {
+        this.requires = requires;
+    }
+
+    /**
+     * Names of the tasks that must have passed before this one runs
+     */
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    /**
+     * Names of the tools the steps may use, or null to offer them all
+     */
+    public List<String> getTools() {
+        return tools;
+    }
+
+    public void setTools(List<String> tools) {
+        this.tools = tools;
+    }
+
+    /**
+     * Free-form metadata of the task, e.g. an owner or a ticket reference
+     */
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(Map<String, String> metadata) {
+        this.metadata = metadata;
+    }
+
     public List<String> getSteps() {
         return steps;
     }
@@ -78,6 +133,31 @@ public class TaskDetails {
         this.steps.add(step);
     }
 
+    public void addStep(String step, Map<String, String> options) {
+        if (options != null && !options.isEmpty()) {
+            this.stepOptions.put(this.steps.size(), options);
+        }
+        this.steps.add(step);
+    }
+
+    public Map<Integer, Map<String, String>> getStepOptions() {
+        return stepOptions;
+    }
+
+    public void setStepOptions(Map<Integer, Map<String, String>> stepOptions) {
+        this.stepOptions = stepOptions;
+    }
+
+    /**
+     * Get the per-step options (e.g. model override) declared for a step
+     *
+     * @param index the zero-based step index
+     * @return the options for this step, never null
+     */
+    public Map<String, String> getStepOptions(int index) {
+        return stepOptions.getOrDefault(index, Map.of());
+    }
+
     @Override
     public String toString() {
         return "TaskDetails{" +
@@ -86,7 +166,12 @@ public class TaskDetails {
                 ", tags=" + tags +
                 ", author='" + author + '\'' +
                 ", created=" + created +
+                ", requires='" + requires + '\'' +
+                ", dependsOn=" + dependsOn +
+                ", tools=" + tools +
+                ", metadata=" + metadata +
                 ", steps=" + steps +
+                ", stepOptions=" + stepOptions +
                 '}';
     }
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 @Data
@@ -12,16 +11,28 @@ import java.util.List;
 public class TaskResult {
 
     public enum Status {
-        SUCCESS, FAILED, ERROR
+        SUCCESS, FAILED, ERROR, SKIPPED
     }
 
+    // Id of the task run that produced the result, null when the task didn't run
+    private String runId;
     private TaskDetails task;
     private Status status;
     private LocalDateTime executionTime;
     private long executionDurationMs;
     private String errorMessage;
 
+    // Spills to disk past a window of recent results, see StepResultStore
     @Builder.Default
-    private List<StepResult> stepResults = new ArrayList<>();
+    private List<StepResult> stepResults = new StepResultStore();
+
+    /**
+     * Delete the step results spilled to disk, once the result has been reported
+     */
+    public void releaseStepResults() {
+        if (stepResults instanceof StepResultStore store) {
+            store.close();
+        }
+    }
 
 }
\ No newline at end of file
@@ -3,26 +3,39 @@ package sh.gepetto.app.operator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
 import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
+import sh.gepetto.app.config.ModelProviders;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
 import sh.gepetto.app.model.StepResult;
 import sh.gepetto.app.model.TaskResult;
+import sh.gepetto.app.service.ActionCacheService;
+import sh.gepetto.app.tools.BrowserPool;
 import sh.gepetto.app.tools.ControlTools;
+import sh.gepetto.app.utils.ObservedToolCallback;
+import sh.gepetto.app.utils.SanitizingToolCallback;
 
+import java.security.MessageDigest;
 import java.util.*;
 
 @Slf4j
@@ -31,109 +44,539 @@ public class AgenticTaskOperator implements TaskOperator {
 
     private final Resource stepSystemPromptResource = new ClassPathResource("prompts/reactSystemPrompt.st");
 
+    // Identical for every task, so providers can cache the prompt prefix across tasks
+    private volatile Message systemMessage;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final ChatClient chatClient;
+    // Chat clients are resolved on first use: creating the default one connects the MCP servers
+    private final ModelProviders modelProviders;
+
+    /**
+     * Models to try for each step, cheapest first. A step escalates to the next model
+     * when it ends in FAILED/ERROR, produces malformed tool arguments or runs out of
+     * its iteration budget. The last model in the ladder is never cut short.
+     */
+    private final List<String> modelLadder;
+
+    private final int iterationBudget;
+
+    private final ObjectProvider<ToolCallbackProvider> tools;
+
+    private final BrowserPool browserPool;
+
+    private final String storageState;
+
+    private final List<ToolCallback> controlToolCallbacks = List.of(ToolCallbacks.from(new ControlTools()));
+
+    // MCP tools of the default client, wrapped so malformed arguments from smaller models get repaired
+    private volatile List<ToolCallback> sharedToolCallbacks;
+
+    private final ActionCacheService actionCache;
 
-    public AgenticTaskOperator(ChatClient chatClient) {
-        this.chatClient = chatClient;
+    private final boolean actionCacheEnabled;
+
+    // Number of previous steps kept in the prompt history, 0 keeps them all
+    private final int historyWindow;
+
+    private final EventBus eventBus;
+
+    public AgenticTaskOperator(ModelProviders modelProviders,
+                               ObjectProvider<ToolCallbackProvider> tools,
+                               BrowserPool browserPool,
+                               ActionCacheService actionCache,
+                               EventBus eventBus,
+                               @Value("${gepetto.operator.models:gpt-4o}") List<String> modelLadder,
+                               @Value("${gepetto.operator.iteration-budget:8}") int iterationBudget,
+                               @Value("${gepetto.operator.action-cache:true}") boolean actionCacheEnabled,
+                               @Value("${gepetto.operator.history-window:100}") int historyWindow,
+                               @Value("${gepetto.browser.storage-state:#{null}}") String storageState) {
+        this.modelProviders = modelProviders;
+        this.tools = tools;
+        this.browserPool = browserPool;
+        this.storageState = storageState;
+        this.actionCache = actionCache;
+        this.eventBus = eventBus;
+        this.modelLadder = modelLadder;
+        this.iterationBudget = iterationBudget;
+        this.actionCacheEnabled = actionCacheEnabled;
+        this.historyWindow = historyWindow;
+    }
+
+    @Override
+    public void start(TaskRun taskRun) {
+        // Connect to the model server while the browser starts
+        modelProviders.prewarm(modelLadder(taskRun, Map.of()));
+        if (browserPool.isEnabled() && taskRun.getUserDataDir() != null) {
+            taskRun.setBrowserSession(browserPool.lease(taskRun.getUserDataDir()));
+        } else if (browserPool.isEnabled()) {
+            String runStorageState = taskRun.getStorageState() != null ? taskRun.getStorageState() : storageState;
+            taskRun.setBrowserSession(browserPool.lease(runStorageState));
+        }
+    }
+
+    @Override
+    public void finish(TaskRun taskRun) {
+        if (taskRun.getBrowserSession() != null) {
+            browserPool.release(taskRun.getBrowserSession());
+            taskRun.setBrowserSession(null);
+        }
+    }
+
+    @Override
+    public boolean canResume() {
+        // Pooled browsers are reset when released, only the shared one keeps its state
+        return !browserPool.isEnabled();
     }
 
     @Override
     public StepResult nextStep(TaskRun taskRun, String input) {
+        return nextStep(taskRun, input, Map.of());
+    }
+
+    @Override
+    public StepResult nextStep(TaskRun taskRun, String input, Map<String, String> options) {
+        String taskName = taskRun.getTask().getName();
+        String cacheKey = ActionCacheService.key(input, stepsDigest(taskRun));
+        List<String> toolNames = toolSubset(taskRun, options);
+
+        // Tokens spent on attempts that didn't make it, counted in the final result
+        StepResult spent = null;
+        int retries = 0;
+
+        // Replay the actions that made this step pass before, the LLM then only verifies the outcome
+        if (actionCacheEnabled) {
+            List<AssistantMessage.ToolCall> cachedCalls = actionCache.get(taskName, cacheKey);
+            if (cachedCalls != null) {
+                List<AssistantMessage.ToolCall> executedCalls = new ArrayList<>();
+                StepResult stepResult = replayStep(taskRun, input, toolNames, cachedCalls, executedCalls);
+                if (stepResult != null && stepResult.getStatus() == TaskResult.Status.SUCCESS) {
+                    if (!executedCalls.equals(cachedCalls)) {
+                        actionCache.put(taskName, cacheKey, executedCalls);
+                    }
+                    return stepResult;
+                }
+
+                log.info("Replay of cached actions for step '{}' diverged, planning it again", input);
+                eventBus.publish(new Event.Message(taskRun.getId(), taskName, "Cached actions diverged, planning the step again"));
+                actionCache.invalidate(taskName, cacheKey);
+                spent = stepResult;
+                retries++;
+            }
+        }
+
+        List<String> ladder = modelLadder(taskRun, options);
+
+        StepResult stepResult = null;
+        for (int i = 0; i < ladder.size(); i++) {
+            boolean lastModel = i == ladder.size() - 1;
+            List<AssistantMessage.ToolCall> executedCalls = new ArrayList<>();
+            stepResult = executeSteps(taskRun, List.of(input), ladder.get(i), toolNames, lastModel ? Integer.MAX_VALUE : iterationBudget, List.of(), executedCalls).get(0);
+            if (spent != null) {
+                stepResult.setPromptTokens(stepResult.getPromptTokens() + spent.getPromptTokens());
+                stepResult.setCachedTokens(stepResult.getCachedTokens() + spent.getCachedTokens());
+                stepResult.setCompletionTokens(stepResult.getCompletionTokens() + spent.getCompletionTokens());
+            }
+
+            if (stepResult.getStatus() == TaskResult.Status.SUCCESS && actionCacheEnabled && !executedCalls.isEmpty()) {
+                actionCache.put(taskName, cacheKey, executedCalls);
+            }
+
+            if (lastModel || stepResult.getStatus() == TaskResult.Status.SUCCESS) {
+                break;
+            }
+
+            log.info("Step '{}' ended with {} on {}, escalating to {}", input, stepResult.getStatus(), ladder.get(i), ladder.get(i + 1));
+            eventBus.publish(new Event.Message(taskRun.getId(), taskName, "Escalating step to model " + ladder.get(i + 1) + " (" + stepResult.getDetails() + ")"));
+            spent = stepResult;
+            retries++;
+        }
+
+        stepResult.setRetries(retries);
+        return stepResult;
+    }
+
+    @Override
+    public List<StepResult> nextSteps(TaskRun taskRun, List<String> inputs) {
+        // Batches only run on the first model of the ladder, the caller retries the
+        // steps from the first unsuccessful one on their own with the full ladder.
+        return executeSteps(taskRun, inputs, modelLadder(taskRun, Map.of()).get(0), toolSubset(taskRun, Map.of()), iterationBudget * inputs.size(), List.of(), new ArrayList<>());
+    }
+
+    /**
+     * A model set on the step, or else in the task metadata, pins the step to that model,
+     * no escalation. Models are referenced as provider/model to run on a configured provider.
+     */
+    private List<String> modelLadder(TaskRun taskRun, Map<String, String> options) {
+        if (options.containsKey("model")) {
+            return List.of(options.get("model"));
+        }
+        Map<String, String> metadata = taskRun.getTask().getMetadata();
+        if (metadata != null && metadata.containsKey("model")) {
+            return List.of(metadata.get("model"));
+        }
+        return modelLadder;
+    }
+
+    /**
+     * Tools listed on the step, or else on the task, are the only ones sent to the model
+     * along with the control tools. Null sends all of them.
+     */
+    private List<String> toolSubset(TaskRun taskRun, Map<String, String> options) {
+        String stepTools = options.get("tools");
+        if (stepTools != null) {
+            // Either a bare comma-separated list or a bracketed one, as in [tools: [a, b]]
+            if (stepTools.startsWith("[") && stepTools.endsWith("]")) {
+                stepTools = stepTools.substring(1, stepTools.length() - 1);
+            }
+            return Arrays.stream(stepTools.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .toList();
+        }
+        return taskRun.getTask().getTools();
+    }
+
+    /**
+     * Execute cached tool calls directly against the tools, then let the first model of the
+     * ladder verify the outcome (or recover) from the replayed tool responses.
+     *
+     * @return the verified step result, or null if a cached call could not be replayed
+     */
+    private StepResult replayStep(TaskRun taskRun, String input, List<String> toolNames, List<AssistantMessage.ToolCall> cachedCalls, List<AssistantMessage.ToolCall> executedCalls) {
+        Map<String, ToolCallback> callbacks = new HashMap<>();
+        for (ToolCallback callback : toolCallbacks(taskRun)) {
+            callbacks.put(callback.getToolDefinition().name(), observed(taskRun, callback, true));
+        }
+
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>();
+        for (AssistantMessage.ToolCall cachedCall : cachedCalls) {
+            ToolCallback callback = callbacks.get(cachedCall.name());
+            if (callback == null) {
+                return null;
+            }
+
+            String response;
+            try {
+                response = callback.call(cachedCall.arguments());
+            } catch (RuntimeException e) {
+                log.info("Replayed action {} failed: {}", cachedCall.name(), e.getMessage());
+                return null;
+            }
+
+            String id = "replay-" + toolCalls.size();
+            toolCalls.add(new AssistantMessage.ToolCall(id, "function", cachedCall.name(), cachedCall.arguments()));
+            toolResponses.add(new ToolResponseMessage.ToolResponse(id, cachedCall.name(), response));
+        }
+        executedCalls.addAll(cachedCalls);
+
+        List<Message> replayMessages = List.of(
+                new AssistantMessage("", Map.of(), toolCalls),
+                new ToolResponseMessage(toolResponses),
+                new UserMessage("The actions above were replayed from a previous successful run of this step. "
+                        + "Verify the outcome and invoke complete_test, or keep acting if the step is not complete."));
+        return executeSteps(taskRun, List.of(input), modelLadder(taskRun, Map.of()).get(0), toolNames, iterationBudget, replayMessages, executedCalls).get(0);
+    }
+
+    private List<StepResult> executeSteps(TaskRun taskRun, List<String> inputs, String model, List<String> toolNames, int maxIterations,
+                                          List<Message> replayMessages, List<AssistantMessage.ToolCall> executedCalls) {
+        List<Usage> usages = new ArrayList<>();
+        List<StepResult> stepResults = runSteps(taskRun, inputs, model, toolNames, maxIterations, replayMessages, executedCalls, usages);
+
+        // Batched steps share a single conversation, its usage is reported on the first step
+        StepResult first = stepResults.get(0);
+        for (Usage usage : usages) {
+            first.setPromptTokens(first.getPromptTokens() + (usage.getPromptTokens() != null ? usage.getPromptTokens() : 0));
+            first.setCompletionTokens(first.getCompletionTokens() + (usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0));
+            first.setCachedTokens(first.getCachedTokens() + cachedTokens(usage));
+        }
+        return stepResults;
+    }
+
+    /**
+     * Prompt tokens served from the provider's prompt cache. Only the OpenAI API reports
+     * them, in its native usage.
+     */
+    private static int cachedTokens(Usage usage) {
+        if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAiUsage
+                && openAiUsage.promptTokensDetails() != null
+                && openAiUsage.promptTokensDetails().cachedTokens() != null) {
+            return openAiUsage.promptTokensDetails().cachedTokens();
+        }
+        return 0;
+    }
+
+    private EventBus.OpenSpan llmSpan(TaskRun taskRun, String model) {
+        return eventBus.span(taskRun.getId(), taskRun.getTask().getName(), "llm", model);
+    }
+
+    private void addUsage(TaskRun taskRun, String model, ChatResponse chatResponse, List<Usage> usages, EventBus.OpenSpan span) {
+        Usage usage = chatResponse.getMetadata().getUsage();
+        usages.add(usage);
+        Event.Tokens tokens = new Event.Tokens(taskRun.getId(), taskRun.getTask().getName(), model,
+                usage.getPromptTokens() != null ? usage.getPromptTokens() : 0, cachedTokens(usage),
+                usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0);
+        eventBus.publish(tokens);
+        span.arg("promptTokens", tokens.promptTokens())
+                .arg("cachedTokens", tokens.cachedTokens())
+                .arg("completionTokens", tokens.completionTokens())
+                .arg("toolCalls", chatResponse.hasToolCalls() ? chatResponse.getResult().getOutput().getToolCalls().size() : 0);
+    }
+
+    private List<StepResult> runSteps(TaskRun taskRun, List<String> inputs, String model, List<String> toolNames, int maxIterations,
+                                      List<Message> replayMessages, List<AssistantMessage.ToolCall> executedCalls, List<Usage> usages) {
+        List<ToolCallback> toolCallbacks = toolCallbacks(taskRun);
+        if (toolNames != null) {
+            List<String> unknown = toolNames.stream()
+                    .filter(name -> toolCallbacks.stream().noneMatch(callback -> isTool(callback, name)))
+                    .toList();
+            if (!unknown.isEmpty()) {
+                return List.of(stepResult(inputs.get(0), "Unknown tools " + unknown, TaskResult.Status.ERROR, model));
+            }
+            toolCallbacks.removeIf(callback -> !controlToolCallbacks.contains(callback)
+                    && toolNames.stream().noneMatch(name -> isTool(callback, name)));
+        }
+        toolCallbacks.replaceAll(callback -> controlToolCallbacks.contains(callback) ? callback : observed(taskRun, callback, false));
+
         // Prepare a toolcallingmanager
         ToolCallingManager toolCallingManager = ToolCallingManager.builder().build();
+        ModelProviders.Route route = modelProviders.route(model);
         ChatOptions chatOptions = ToolCallingChatOptions.builder()
+                .model(route.model())
+                .toolCallbacks(toolCallbacks)
                 .internalToolExecutionEnabled(false)
                 .build();
 
+        String input = inputs.get(0);
+        boolean batch = inputs.size() > 1;
+        if (batch) {
+            StringBuilder batchInput = new StringBuilder("Execute the following steps in order:\n");
+            for (int i = 0; i < inputs.size(); i++) {
+                batchInput.append(i + 1).append(". ").append(inputs.get(i)).append("\n");
+            }
+            batchInput.append("Once all steps are done, or as soon as one fails, invoke the complete_steps tool with one result per step, in order.");
+            input = batchInput.toString();
+        }
+
         // Prepare the prompt
         Prompt prompt;
-        try {
-            prompt = preparePrompt(taskRun, input, chatOptions);
+        try (EventBus.OpenSpan span = eventBus.span(taskRun.getId(), taskRun.getTask().getName(), "prompt", "prepare prompt")) {
+            prompt = preparePrompt(taskRun, batch ? new UserMessage(input) : stepMessage(input), replayMessages, chatOptions);
+            span.arg("messages", prompt.getInstructions().size());
         } catch (JsonProcessingException e) {
-            return StepResult.builder()
-                    .step(input)
-                    .details(e.getMessage())
-                    .status(TaskResult.Status.ERROR)
-                    .build();
+            return List.of(stepResult(inputs.get(0), e.getMessage(), TaskResult.Status.ERROR, model));
         }
 
         // We create the stepId now so we can inject in the context
         UUID stepId = UUID.randomUUID();
 
-        // Collect the entire response for later processing
-        StringBuilder fullResponse = new StringBuilder();
-        List<Usage> usages = new ArrayList<>();
-
         // Prepare tool context data
         Map<String, Object> toolContextData = new HashMap<>();
         toolContextData.put("input", input);
 
         // Stream the response
-        ChatResponse chatResponse = chatClient
-                .prompt(prompt)
-                .toolContext(toolContextData)
-                .call()
-                .chatResponse();
+        ChatResponse chatResponse;
+        try (EventBus.OpenSpan span = llmSpan(taskRun, model)) {
+            chatResponse = route.chatClient()
+                    .prompt(prompt)
+                    .toolContext(toolContextData)
+                    .call()
+                    .chatResponse();
+            addUsage(taskRun, model, chatResponse, usages, span);
+        }
 
+        int iterations = 0;
         while (chatResponse.hasToolCalls()) {
+            // A step that timed out is interrupted, stop before calling more tools
+            if (Thread.currentThread().isInterrupted()) {
+                return List.of(stepResult(inputs.get(0), "Step interrupted", TaskResult.Status.ERROR, model));
+            }
+            if (++iterations > maxIterations) {
+                return List.of(stepResult(inputs.get(0), "Iteration budget of " + maxIterations + " exceeded", TaskResult.Status.ERROR, model));
+            }
+
             for (AssistantMessage.ToolCall toolCall : chatResponse.getResult().getOutput().getToolCalls()) {
-                if (!toolCall.name().equals("complete_test")) {
-                    System.out.println("Executing action " + toolCall.name() + "(" + toolCall.arguments() + ")");
-                } else {
-                    try {
+                try {
+                    if (toolCall.name().equals("complete_test") && batch) {
+                        // A single status can't tell which of the steps passed
+                        return List.of(stepResult(inputs.get(0), "Batch completed with complete_test instead of complete_steps", TaskResult.Status.ERROR, model));
+                    } else if (toolCall.name().equals("complete_test")) {
                         ControlTools.CompleteActionResult completeActionResult = objectMapper.readValue(toolCall.arguments(), ControlTools.CompleteActionResult.class);
-                        return StepResult.builder()
-                                .step(input)
-                                .details(completeActionResult.message())
-                                .status(completeActionResult.status())
-                                .build();
-                    } catch (JsonProcessingException e) {
-                        return StepResult.builder()
-                                .step(input)
-                                .details(e.getMessage())
-                                .status(TaskResult.Status.ERROR)
-                                .build();
+                        return List.of(stepResult(input, completeActionResult.message(), completeActionResult.status(), model));
+                    } else if (toolCall.name().equals("complete_steps")) {
+                        ControlTools.CompleteStepsResult completeStepsResult = objectMapper.readValue(toolCall.arguments(), ControlTools.CompleteStepsResult.class);
+                        return unpackStepResults(inputs, completeStepsResult, model);
                     }
+                } catch (JsonProcessingException e) {
+                    return List.of(stepResult(inputs.get(0), e.getMessage(), TaskResult.Status.ERROR, model));
+                }
+
+                if (maxIterations != Integer.MAX_VALUE && SanitizingToolCallback.needsRepair(toolCall.arguments())) {
+                    return List.of(stepResult(inputs.get(0), "Malformed arguments for tool " + toolCall.name(), TaskResult.Status.ERROR, model));
                 }
+                executedCalls.add(toolCall);
             }
 
             ToolExecutionResult toolExecutionResult = toolCallingManager.executeToolCalls(prompt, chatResponse);
             prompt = new Prompt(toolExecutionResult.conversationHistory(), chatOptions);
-            chatResponse = chatClient.prompt(prompt).call().chatResponse();
+            try (EventBus.OpenSpan span = llmSpan(taskRun, model)) {
+                chatResponse = route.chatClient().prompt(prompt).call().chatResponse();
+                addUsage(taskRun, model, chatResponse, usages, span);
+            }
+        }
+
+        if (batch) {
+            return List.of(stepResult(inputs.get(0), "No per-step results reported for the batch", TaskResult.Status.ERROR, model));
         }
 
+        return List.of(stepResult(input, chatResponse.getResult().getOutput().getText(), TaskResult.Status.SUCCESS, model));
+    }
+
+    /**
+     * Map the statuses reported through complete_steps back onto the individual steps.
+     * Steps the model did not report on are marked as errors.
+     */
+    private List<StepResult> unpackStepResults(List<String> inputs, ControlTools.CompleteStepsResult completeStepsResult, String model) {
+        List<ControlTools.CompleteActionResult> reported = completeStepsResult.results() != null ? completeStepsResult.results() : List.of();
+        List<StepResult> stepResults = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            if (i < reported.size() && reported.get(i).status() != null) {
+                stepResults.add(stepResult(inputs.get(i), reported.get(i).message(), reported.get(i).status(), model));
+            } else {
+                stepResults.add(stepResult(inputs.get(i), "No result reported for this step", TaskResult.Status.ERROR, model));
+            }
+        }
+        return stepResults;
+    }
+
+    /**
+     * MCP tool names are prefixed with the name of their client, so match on the suffix
+     */
+    private static boolean isTool(ToolCallback callback, String name) {
+        String toolName = callback.getToolDefinition().name();
+        return toolName.equals(name) || toolName.endsWith("_" + name);
+    }
+
+    /**
+     * The tools available to a run: its own browser session if it leased one, otherwise
+     * the tools of the default MCP client, plus the control tools.
+     */
+    private List<ToolCallback> toolCallbacks(TaskRun taskRun) {
+        List<ToolCallback> toolCallbacks = new ArrayList<>();
+        if (taskRun.getBrowserSession() != null) {
+            toolCallbacks.addAll(taskRun.getBrowserSession().getToolCallbacks());
+        } else {
+            if (sharedToolCallbacks == null) {
+                sharedToolCallbacks = Arrays.stream(tools.getObject().getToolCallbacks())
+                        .map(SanitizingToolCallback::new)
+                        .map(ToolCallback.class::cast)
+                        .toList();
+            }
+            toolCallbacks.addAll(sharedToolCallbacks);
+        }
+        toolCallbacks.addAll(controlToolCallbacks);
+        return toolCallbacks;
+    }
+
+    private ToolCallback observed(TaskRun taskRun, ToolCallback callback, boolean replayed) {
+        return new ObservedToolCallback(callback, eventBus, taskRun.getId(), taskRun.getTask().getName(), replayed);
+    }
+
+    private StepResult stepResult(String input, String details, TaskResult.Status status, String model) {
         return StepResult.builder()
                 .step(input)
-                .details(chatResponse.getResult().getOutput().getText())
-                .status(TaskResult.Status.SUCCESS)
+                .details(details)
+                .status(status)
+                .model(model)
                 .build();
     }
 
-    private Prompt preparePrompt(TaskRun taskRun, String input, ChatOptions chatOptions) throws JsonProcessingException {
-        // Prepare the system prompt. This one contains non user/taskRun specific
-        // information such as the list of possible actions.
-        PromptTemplate systemPrompt = new SystemPromptTemplate(stepSystemPromptResource);
-        Message systemMessage = systemPrompt.createMessage(Map.of(
-                "name", taskRun.getTask().getName(),
-                "description", taskRun.getTask().getDescription()
-        ));
-
+    private Prompt preparePrompt(TaskRun taskRun, Message request, List<Message> replayMessages, ChatOptions chatOptions) throws JsonProcessingException {
         // Prepare the message history
         List<Message> messageList = new ArrayList<>();
-        messageList.add(systemMessage);
-
-        // Add historical steps
-        for (StepResult step : taskRun.getResult().getStepResults()) {
-            messageList.add(UserMessage.builder().text("Step: " + step.getStep()).build());
-            messageList.add(new AssistantMessage(objectMapper.writeValueAsString(new ControlTools.CompleteActionResult(step.getDetails(), step.getStatus()))));
+        synchronized (taskRun) {
+            syncHistory(taskRun);
+            messageList.add(systemMessage());
+            messageList.add(taskRun.getTaskMessage());
+            messageList.addAll(taskRun.getHistory());
         }
 
-        // Add the user request
-        messageList.add(new UserMessage(input));
+        // Add the user request, followed by any actions replayed for it
+        messageList.add(request);
+        messageList.addAll(replayMessages);
 
         // Prepare the final prompt
         return new Prompt(messageList, chatOptions);
     }
-}
\ No newline at end of file
+
+    /**
+     * A step is sent the same way it later appears in the history, so the prompt of the
+     * next step extends the prompt of this one
+     */
+    private static Message stepMessage(String step) {
+        return new UserMessage("Step: " + step);
+    }
+
+    private Message systemMessage() {
+        if (systemMessage == null) {
+            systemMessage = new SystemPromptTemplate(stepSystemPromptResource).createMessage();
+        }
+        return systemMessage;
+    }
+
+    /**
+     * Serialize any step results not yet in the run history, so each step only pays for
+     * the steps completed since the previous one.
+     */
+    private void syncHistory(TaskRun taskRun) throws JsonProcessingException {
+        synchronized (taskRun) {
+            // The task comes after the static system prompt, the prompt prefix only
+            // changes from here on
+            if (taskRun.getTaskMessage() == null) {
+                StringBuilder taskMessage = new StringBuilder("Test: ").append(taskRun.getTask().getName());
+                if (taskRun.getTask().getDescription() != null) {
+                    taskMessage.append("\nGoal: ").append(taskRun.getTask().getDescription());
+                }
+                taskRun.setTaskMessage(new UserMessage(taskMessage.toString()));
+            }
+
+            // Add historical steps, only reading the results the history window keeps
+            List<StepResult> stepResults = taskRun.getResult().getStepResults();
+            int first = taskRun.getHistorySteps();
+            if (historyWindow > 0) {
+                first = Math.max(first, stepResults.size() - historyWindow);
+            }
+            for (int i = first; i < stepResults.size(); i++) {
+                StepResult step = stepResults.get(i);
+                taskRun.getHistory().add(stepMessage(step.getStep()));
+                taskRun.getHistory().add(new AssistantMessage(objectMapper.writeValueAsString(new ControlTools.CompleteActionResult(step.getDetails(), step.getStatus()))));
+            }
+            taskRun.setHistorySteps(stepResults.size());
+
+            // Drop old steps in blocks rather than one at a time, so the history keeps the
+            // same start, and the prompt a cacheable prefix, for a whole window of steps
+            if (historyWindow > 0 && taskRun.getHistory().size() > historyWindow * 4) {
+                taskRun.getHistory().subList(0, taskRun.getHistory().size() - historyWindow * 2).clear();
+            }
+        }
+    }
+
+    /**
+     * Fold the step results added since the previous step into the run's digest of
+     * executed steps, so computing a cache key doesn't read the whole run back
+     */
+    private MessageDigest stepsDigest(TaskRun taskRun) {
+        synchronized (taskRun) {
+            if (taskRun.getStepsDigest() == null) {
+                taskRun.setStepsDigest(ActionCacheService.newPrefixDigest());
+            }
+            List<StepResult> stepResults = taskRun.getResult().getStepResults();
+            for (int i = taskRun.getDigestedSteps(); i < stepResults.size(); i++) {
+                ActionCacheService.addToPrefix(taskRun.getStepsDigest(), stepResults.get(i).getStep());
+            }
+            taskRun.setDigestedSteps(stepResults.size());
+            return taskRun.getStepsDigest();
+        }
+    }
+}
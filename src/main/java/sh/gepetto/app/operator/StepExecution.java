@@ -0,0 +1,45 @@
+package sh.gepetto.app.operator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Work of a step running on its own virtual thread. The result completes once that work
+ * ended, whether it returned, failed or was interrupted, so a caller giving up on a step
+ * can interrupt it and still know when it stopped using the run's browser session.
+ */
+public final class StepExecution<T> {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final Thread thread;
+
+    private StepExecution(TaskRun taskRun, Supplier<T> work) {
+        this.thread = Thread.ofVirtual().name("step-" + taskRun.getId()).start(() -> {
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Start the work of a step on a new virtual thread
+     */
+    public static <T> StepExecution<T> start(TaskRun taskRun, Supplier<T> work) {
+        return new StepExecution<>(taskRun, work);
+    }
+
+    /**
+     * The result of the step, completed when its work ended
+     */
+    public CompletableFuture<T> result() {
+        return result;
+    }
+
+    /**
+     * Ask the step to stop, its result completes when it did
+     */
+    public void interrupt() {
+        thread.interrupt();
+    }
+}
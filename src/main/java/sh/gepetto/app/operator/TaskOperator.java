@@ -3,8 +3,67 @@ package sh.gepetto.app.operator;
 import sh.gepetto.app.model.StepResult;
 import sh.gepetto.app.model.TaskDetails;
 
+import java.util.List;
+import java.util.Map;
+
 public interface TaskOperator {
 
+    /**
+     * Acquire the resources of a task run (e.g. a browser session) before its first step
+     */
+    default void start(TaskRun taskRun) {
+    }
+
+    /**
+     * Release the resources of a task run, called whatever the outcome of the run
+     */
+    default void finish(TaskRun taskRun) {
+    }
+
+    /**
+     * Whether a new run can continue where a finished run of the same task left off,
+     * i.e. the browser state survives the end of a run
+     */
+    default boolean canResume() {
+        return false;
+    }
+
     StepResult nextStep(TaskRun taskRun, String input);
 
+    /**
+     * Execute the next step with the per-step options declared in the task file
+     * (e.g. a model override). Operators that don't support options ignore them.
+     */
+    default StepResult nextStep(TaskRun taskRun, String input, Map<String, String> options) {
+        return nextStep(taskRun, input);
+    }
+
+    /**
+     * Execute the next step without blocking the caller. The default implementation runs
+     * {@link #nextStep(TaskRun, String, Map)} on a virtual thread, so thousands of steps
+     * waiting on the LLM or tools only hold a handful of platform threads. Interrupting the
+     * execution interrupts the step.
+     */
+    default StepExecution<StepResult> nextStepAsync(TaskRun taskRun, String input, Map<String, String> options) {
+        return StepExecution.start(taskRun, () -> nextStep(taskRun, input, options));
+    }
+
+    /**
+     * Execute several consecutive steps in a single agent turn. Returns one result per
+     * step attempted, in order; this may be fewer than the inputs, in which case the
+     * caller continues with the remaining steps. Operators without batching support
+     * execute only the first step.
+     */
+    default List<StepResult> nextSteps(TaskRun taskRun, List<String> inputs) {
+        return List.of(nextStep(taskRun, inputs.get(0)));
+    }
+
+    /**
+     * Execute several consecutive steps without blocking the caller, on a virtual thread
+     * like {@link #nextStepAsync(TaskRun, String, Map)}
+     */
+    default StepExecution<List<StepResult>> nextStepsAsync(TaskRun taskRun, List<String> inputs) {
+        return StepExecution.start(taskRun, () -> nextSteps(taskRun, inputs));
+    }
+
 }
@@ -2,10 +2,16 @@ package sh.gepetto.app.operator;
 
 import lombok.Builder;
 import lombok.Data;
+import org.springframework.ai.chat.messages.Message;
 import sh.gepetto.app.model.TaskDetails;
 import sh.gepetto.app.model.TaskResult;
+import sh.gepetto.app.tools.BrowserSession;
 
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -18,5 +24,29 @@ public class TaskRun {
 
   private TaskResult result;
 
-}
+  // Storage state to restore the browser context from, if any
+  private String storageState;
+
+  // Persistent browser profile for this run, e.g. a copy of the profile left by a fixture
+  private Path userDataDir;
+
+  // Browser leased from the pool for this run, null when runs share the default MCP client
+  private BrowserSession browserSession;
+
+  // Rendered once per run, states the test and its goal right after the static system prompt
+  private Message taskMessage;
+
+  // Serialized step history, appended to as step results come in
+  @Builder.Default
+  private List<Message> history = new ArrayList<>();
 
+  // Number of step results serialized into the history so far, older ones may have been dropped
+  private int historySteps;
+
+  // Digest of the step texts executed so far, the prefix of the action cache keys
+  private MessageDigest stepsDigest;
+
+  // Number of step results folded into the digest so far
+  private int digestedSteps;
+
+}
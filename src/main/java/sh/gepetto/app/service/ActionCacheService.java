@@ -0,0 +1,196 @@
+package sh.gepetto.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Service storing the tool calls that made a step succeed, so later runs can
+ * replay them without asking the LLM to plan the step again.
+ * <p>
+ * Entries are stored per task under .gepetto/cache/actions and keyed on the step
+ * text after variable substitution and on the steps that ran before it in the
+ * same run, which stands in for the page state the step starts from.
+ * <p>
+ * Each task's cache is an append-only log of JSON lines, one per entry recorded or
+ * dropped, so updating an entry doesn't rewrite the others. The log is compacted when
+ * it is loaded and mostly holds superseded lines.
+ */
+@Service
+public class ActionCacheService {
+    private static final Logger logger = LoggerFactory.getLogger(ActionCacheService.class);
+    private static final TypeReference<Map<String, List<AssistantMessage.ToolCall>>> CACHE_TYPE = new TypeReference<>() {};
+
+    /**
+     * A line of the log, toolCalls being null when the entry was dropped
+     */
+    private record LogEntry(String key, List<AssistantMessage.ToolCall> toolCalls) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<String, List<AssistantMessage.ToolCall>>> caches = new ConcurrentHashMap<>();
+    private final Path cacheDir;
+
+    public ActionCacheService() {
+        this(Path.of(PROJECT_DIR, CACHE_DIR, ACTIONS_CACHE_DIR));
+    }
+
+    ActionCacheService(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Get the cached tool calls for a step
+     *
+     * @param taskName the task the step belongs to
+     * @param key      the step key, see {@link #key(String, MessageDigest)}
+     * @return the tool calls to replay, or null if the step isn't cached
+     */
+    public List<AssistantMessage.ToolCall> get(String taskName, String key) {
+        return load(taskName).get(key);
+    }
+
+    /**
+     * Record the tool calls that made a step succeed
+     */
+    public void put(String taskName, String key, List<AssistantMessage.ToolCall> toolCalls) {
+        List<AssistantMessage.ToolCall> entry = List.copyOf(toolCalls);
+        load(taskName).put(key, entry);
+        append(taskName, new LogEntry(key, entry));
+    }
+
+    /**
+     * Drop a cached step, typically after its replay diverged
+     */
+    public void invalidate(String taskName, String key) {
+        if (load(taskName).remove(key) != null) {
+            append(taskName, new LogEntry(key, null));
+        }
+    }
+
+    /**
+     * Compute the cache key of a step from its text and a digest of the steps executed
+     * before it, as built with {@link #newPrefixDigest()} and {@link #addToPrefix}. The
+     * prefix digest is left untouched, so it can be extended step by step.
+     */
+    public static String key(String step, MessageDigest prefix) {
+        try {
+            MessageDigest digest = (MessageDigest) prefix.clone();
+            digest.update(step.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static MessageDigest newPrefixDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void addToPrefix(MessageDigest prefix, String previousStep) {
+        prefix.update(previousStep.getBytes(StandardCharsets.UTF_8));
+        prefix.update((byte) '\n');
+    }
+
+    private Map<String, List<AssistantMessage.ToolCall>> load(String taskName) {
+        return caches.computeIfAbsent(taskName, name -> {
+            Map<String, List<AssistantMessage.ToolCall>> cache = new ConcurrentHashMap<>();
+            Path logFile = cacheFile(name, ".jsonl");
+            Path legacyFile = cacheFile(name, ".json");
+            int lines = 0;
+            try {
+                if (Files.exists(logFile)) {
+                    for (String line : Files.readAllLines(logFile, StandardCharsets.UTF_8)) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        lines++;
+                        LogEntry entry;
+                        try {
+                            entry = objectMapper.readValue(line, LogEntry.class);
+                        } catch (JsonProcessingException e) {
+                            // E.g. a line cut short by an interrupted run, dropped by the next compaction
+                            logger.warn("Skipping unreadable line of action cache {}: {}", logFile, e.getOriginalMessage());
+                            continue;
+                        }
+                        if (entry.toolCalls() != null) {
+                            cache.put(entry.key(), entry.toolCalls());
+                        } else {
+                            cache.remove(entry.key());
+                        }
+                    }
+                } else if (Files.exists(legacyFile)) {
+                    // Cache written as a single JSON object by earlier versions
+                    cache.putAll(objectMapper.readValue(legacyFile.toFile(), CACHE_TYPE));
+                    lines = Integer.MAX_VALUE;
+                }
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable action cache {}: {}", logFile, e.getMessage());
+                cache.clear();
+                lines = Integer.MAX_VALUE;
+            }
+
+            if (lines > cache.size() * 2 + 16) {
+                compact(name, cache);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Rewrite the log of a task with only its live entries
+     */
+    private synchronized void compact(String taskName, Map<String, List<AssistantMessage.ToolCall>> cache) {
+        Path logFile = cacheFile(taskName, ".jsonl");
+        try {
+            Files.createDirectories(logFile.getParent());
+            StringBuilder log = new StringBuilder();
+            for (Map.Entry<String, List<AssistantMessage.ToolCall>> entry : cache.entrySet()) {
+                log.append(objectMapper.writeValueAsString(new LogEntry(entry.getKey(), entry.getValue()))).append('\n');
+            }
+            Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+            Files.writeString(tempFile, log, StandardCharsets.UTF_8);
+            Files.move(tempFile, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(cacheFile(taskName, ".json"));
+        } catch (IOException e) {
+            logger.warn("Failed to compact action cache {}: {}", logFile, e.getMessage());
+        }
+    }
+
+    private synchronized void append(String taskName, LogEntry entry) {
+        Path logFile = cacheFile(taskName, ".jsonl");
+        try {
+            Files.createDirectories(logFile.getParent());
+            Files.writeString(logFile, objectMapper.writeValueAsString(entry) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.warn("Failed to save action cache {}: {}", logFile, e.getMessage());
+        }
+    }
+
+    private Path cacheFile(String taskName, String extension) {
+        return cacheDir.resolve(taskName.replaceAll("[^a-zA-Z0-9-_.]", "_") + extension);
+    }
+}
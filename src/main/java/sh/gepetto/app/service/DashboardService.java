@@ -0,0 +1,151 @@
+package sh.gepetto.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import sh.gepetto.app.model.DailyRollup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Service generating a static HTML dashboard of the task results from their daily rollups.
+ * Only the days shown are read, so the dashboard takes the same time whatever the history.
+ */
+@Service
+public class DashboardService {
+    private static final Logger logger = LoggerFactory.getLogger(DashboardService.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BAR_WIDTH = 6;
+    private static final int BAR_HEIGHT = 24;
+
+    /**
+     * Write the dashboard of the last days
+     *
+     * @param rollups the rollups, see {@link ResultRollupService#update()}
+     * @param file    the HTML file to write
+     * @param days    the number of days shown, today included
+     */
+    public void write(ResultRollupService.RollupFile rollups, Path file, int days) throws IOException {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days - 1L);
+
+        Map<String, NavigableMap<String, DailyRollup>> tasks = new TreeMap<>();
+        DailyRollup total = new DailyRollup();
+        rollups.tasks().forEach((task, taskDays) -> {
+            NavigableMap<String, DailyRollup> window = taskDays.subMap(from.toString(), true, today.toString(), true);
+            if (!window.isEmpty()) {
+                tasks.put(task, window);
+                window.values().forEach(day -> add(total, day));
+            }
+        });
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer html = Files.newBufferedWriter(file)) {
+            html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n");
+            html.append("<title>Gepetto results</title>\n");
+            html.append("<style>\n");
+            html.append("body{font-family:system-ui,sans-serif;margin:2em;color:#222}\n");
+            html.append("table{border-collapse:collapse}\n");
+            html.append("th,td{padding:.4em .8em;border-bottom:1px solid #ddd;text-align:right}\n");
+            html.append("th:first-child,td:first-child{text-align:left}\n");
+            html.append("tr.total td{font-weight:bold}\n");
+            html.append(".muted{color:#888}\n");
+            html.append("</style>\n</head>\n<body>\n");
+            html.append("<h1>Gepetto results</h1>\n");
+            html.append("<p class=\"muted\">Last ").append(String.valueOf(days)).append(" days, from ")
+                    .append(from.toString()).append(" to ").append(today.toString()).append(". Generated at ")
+                    .append(LocalDateTime.now().format(DATE_FORMATTER)).append(".</p>\n");
+
+            if (tasks.isEmpty()) {
+                html.append("<p>No results in this period.</p>\n");
+            } else {
+                html.append("<table>\n<thead><tr><th>Task</th><th>Runs</th><th>Pass rate</th><th>p50</th><th>p95</th>")
+                        .append("<th>Tokens / run</th><th>Cached</th><th>Retries</th><th>Daily</th></tr></thead>\n<tbody>\n");
+                writeRow(html, "All tasks", total, null, from, days, "total");
+                for (Map.Entry<String, NavigableMap<String, DailyRollup>> task : tasks.entrySet()) {
+                    DailyRollup sum = new DailyRollup();
+                    task.getValue().values().forEach(day -> add(sum, day));
+                    writeRow(html, task.getKey(), sum, task.getValue(), from, days, null);
+                }
+                html.append("</tbody>\n</table>\n");
+            }
+            html.append("</body>\n</html>\n");
+        }
+        logger.info("Saved dashboard of {} tasks to {}", tasks.size(), file);
+    }
+
+    private void writeRow(Writer html, String task, DailyRollup sum, NavigableMap<String, DailyRollup> window,
+                          LocalDate from, int days, String cssClass) throws IOException {
+        html.append(cssClass != null ? "<tr class=\"" + cssClass + "\">" : "<tr>");
+        html.append("<td>").append(escapeHtml(task)).append("</td>");
+        html.append("<td>").append(String.valueOf(sum.getRuns())).append("</td>");
+        html.append("<td>").append(String.format("%.1f%%", 100.0 * sum.getPassed() / sum.getRuns())).append("</td>");
+        html.append("<td>").append(formatDuration(sum.getDurations().getValueAtPercentile(50))).append("</td>");
+        html.append("<td>").append(formatDuration(sum.getDurations().getValueAtPercentile(95))).append("</td>");
+        html.append("<td>").append(String.valueOf((sum.getPromptTokens() + sum.getCompletionTokens()) / sum.getRuns())).append("</td>");
+        html.append("<td>").append(sum.getPromptTokens() > 0
+                ? String.format("%.0f%%", 100.0 * sum.getCachedTokens() / sum.getPromptTokens()) : "-").append("</td>");
+        html.append("<td>").append(String.valueOf(sum.getRetries())).append("</td>");
+        html.append("<td>");
+        if (window != null) {
+            writeDailyBars(html, window, from, days);
+        }
+        html.append("</td></tr>\n");
+    }
+
+    /**
+     * One bar per day, as high as the day had runs relative to the busiest day, colored by pass rate
+     */
+    private void writeDailyBars(Writer html, NavigableMap<String, DailyRollup> window, LocalDate from, int days) throws IOException {
+        int maxRuns = window.values().stream().mapToInt(DailyRollup::getRuns).max().orElse(1);
+        html.append("<svg width=\"").append(String.valueOf(days * BAR_WIDTH)).append("\" height=\"")
+                .append(String.valueOf(BAR_HEIGHT)).append("\">");
+        for (int i = 0; i < days; i++) {
+            String day = from.plusDays(i).toString();
+            DailyRollup rollup = window.get(day);
+            if (rollup == null) {
+                continue;
+            }
+            int height = Math.max(2, BAR_HEIGHT * rollup.getRuns() / maxRuns);
+            String color = rollup.getPassed() == rollup.getRuns() ? "#2e7d32" : rollup.getPassed() == 0 ? "#c62828" : "#ef6c00";
+            html.append("<rect x=\"").append(String.valueOf(i * BAR_WIDTH)).append("\" y=\"")
+                    .append(String.valueOf(BAR_HEIGHT - height)).append("\" width=\"").append(String.valueOf(BAR_WIDTH - 1))
+                    .append("\" height=\"").append(String.valueOf(height)).append("\" fill=\"").append(color).append("\">");
+            html.append("<title>").append(day).append(": ").append(String.valueOf(rollup.getPassed())).append("/")
+                    .append(String.valueOf(rollup.getRuns())).append(" passed</title></rect>");
+        }
+        html.append("</svg>");
+    }
+
+    private static void add(DailyRollup sum, DailyRollup day) {
+        sum.setRuns(sum.getRuns() + day.getRuns());
+        sum.setPassed(sum.getPassed() + day.getPassed());
+        sum.setFailed(sum.getFailed() + day.getFailed());
+        sum.setErrors(sum.getErrors() + day.getErrors());
+        sum.setSkipped(sum.getSkipped() + day.getSkipped());
+        sum.setRetries(sum.getRetries() + day.getRetries());
+        sum.setPromptTokens(sum.getPromptTokens() + day.getPromptTokens());
+        sum.setCachedTokens(sum.getCachedTokens() + day.getCachedTokens());
+        sum.setCompletionTokens(sum.getCompletionTokens() + day.getCompletionTokens());
+        sum.addDurations(day);
+    }
+
+    private static String formatDuration(long ms) {
+        return ms < 1000 ? ms + "ms" : String.format("%.1fs", ms / 1000.0);
+    }
+
+    private static String escapeHtml(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -3,14 +3,23 @@ package sh.gepetto.app.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import sh.gepetto.app.events.ChromeTrace;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
 import sh.gepetto.app.model.StepResult;
 import sh.gepetto.app.model.TaskResult;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import static sh.gepetto.app.config.Constants.*;
 
@@ -23,14 +32,23 @@ public class JUnitReportService {
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
+    private final EventBus eventBus;
+
+    public JUnitReportService(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
     /**
-     * Save a test result as a JUnit XML report
+     * Save a test result as a JUnit XML report, with a trace of the run when spans are given
      *
      * @param result The test result to save
+     * @param spans  The spans of the run, see {@link sh.gepetto.app.events.TraceRecorder}
      * @return The path to the saved report file
      * @throws IOException If there is an error writing the file
      */
-    public Path saveReport(TaskResult result) throws IOException {
+    public Path saveReport(TaskResult result, List<Event.Span> spans) throws IOException {
+        EventBus.OpenSpan reportSpan = eventBus.span(result.getRunId(), result.getTask().getName(), "report", "write report");
+
         // Create results directory structure
         String timestamp = result.getExecutionTime().format(TIMESTAMP_FORMATTER);
         String taskName = sanitizeFileName(result.getTask().getName());
@@ -38,13 +56,10 @@ public class JUnitReportService {
         Path resultsDir = Path.of(PROJECT_DIR, RESULTS_DIR, taskName, timestamp);
         Files.createDirectories(resultsDir);
         
-        // Create the XML report
-        String xmlContent = generateJUnitXml(result);
-        
-        // Write the XML file
+        // Write the XML report, streaming step results rather than building it in memory
         Path reportFile = resultsDir.resolve("junit-report.xml");
-        try (FileWriter writer = new FileWriter(reportFile.toFile())) {
-            writer.write(xmlContent);
+        try (Writer writer = Files.newBufferedWriter(reportFile)) {
+            writeJUnitXml(result, writer);
         }
         
         // Create JSON report for the full result data
@@ -52,101 +67,353 @@ public class JUnitReportService {
         saveJsonReport(result, jsonFile);
         
         logger.info("Saved JUnit report to {}", reportFile);
+
+        // Chrome Trace Event format, for Perfetto or chrome://tracing
+        if (!spans.isEmpty()) {
+            List<Event.Span> traceSpans = new ArrayList<>(spans);
+            traceSpans.add(reportSpan.end());
+            writeTrace(resultsDir.resolve("trace.json"), traceSpans);
+        }
+        reportSpan.end();
         return reportFile;
     }
+
+    /**
+     * Save a trace of several task runs, each on its own track, in the results directory
+     *
+     * @return The path to the saved trace file
+     */
+    public Path saveTrace(List<Event.Span> spans, LocalDateTime executionTime) throws IOException {
+        Path resultsDir = Path.of(PROJECT_DIR, RESULTS_DIR);
+        Files.createDirectories(resultsDir);
+        Path traceFile = resultsDir.resolve("trace_" + executionTime.format(TIMESTAMP_FORMATTER) + ".json");
+        writeTrace(traceFile, spans);
+        return traceFile;
+    }
+
+    /**
+     * Open a report of all the tasks run by a command: a JUnit XML file with one testsuite
+     * per task, and a JSON summary, in the results directory
+     *
+     * @param executionTime the start of the command, in the file names
+     */
+    public SuiteReport openSuite(LocalDateTime executionTime) throws IOException {
+        Path resultsDir = Path.of(PROJECT_DIR, RESULTS_DIR);
+        Files.createDirectories(resultsDir);
+        String timestamp = executionTime.format(TIMESTAMP_FORMATTER);
+        return new SuiteReport(resultsDir.resolve("junit-report_" + timestamp + ".xml"),
+                resultsDir.resolve("summary_" + timestamp + ".json"), executionTime);
+    }
+
+    /**
+     * Report of several tasks, written as their results come in.
+     * <p>
+     * Results are added from the threads running the tasks, a single writer thread appends
+     * each one to the XML report and folds it into the summary. Closing the report only
+     * writes the closing tag and the summary, so it is ready as soon as the last task ends.
+     */
+    public final class SuiteReport implements AutoCloseable {
+        // Queued by close() after the last result
+        private static final TaskResult END = TaskResult.builder().build();
+
+        private final BlockingQueue<TaskResult> results = new LinkedBlockingQueue<>();
+        private final Path reportFile;
+        private final Path summaryFile;
+        private final LocalDateTime executionTime;
+        private final long start = System.currentTimeMillis();
+        private final Thread writer;
+        private volatile IOException failure;
+        private boolean closed;
+
+        // Folded in by the writer thread only
+        private final StringBuilder taskSummaries = new StringBuilder();
+        private final int[] statusCounts = new int[TaskResult.Status.values().length];
+        private int tasks;
+        private int steps;
+        private long promptTokens;
+        private long cachedTokens;
+        private long completionTokens;
+
+        private SuiteReport(Path reportFile, Path summaryFile, LocalDateTime executionTime) {
+            this.reportFile = reportFile;
+            this.summaryFile = summaryFile;
+            this.executionTime = executionTime;
+            this.writer = Thread.ofPlatform().name("gepetto-report").start(this::write);
+        }
+
+        public Path getReportFile() {
+            return reportFile;
+        }
+
+        public Path getSummaryFile() {
+            return summaryFile;
+        }
+
+        /**
+         * Queue a task result for the report, never blocks. The report is the last reader
+         * of the result, its spilled step results are released once it is written.
+         */
+        public void add(TaskResult result) {
+            results.add(result);
+        }
+
+        private void write() {
+            try (Writer xml = Files.newBufferedWriter(reportFile)) {
+                xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                xml.append("<testsuites name=\"gepetto\">\n");
+                xml.flush();
+                TaskResult result;
+                while ((result = results.take()) != END) {
+                    writeTestSuite(result, xml, "  ");
+                    // Keep the file readable while tasks still run
+                    xml.flush();
+                    summarize(result);
+                    result.releaseStepResults();
+                }
+                xml.append("</testsuites>\n");
+            } catch (IOException e) {
+                failure = e;
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try (Writer json = Files.newBufferedWriter(summaryFile)) {
+                writeSummary(json);
+            } catch (IOException e) {
+                failure = e;
+            }
+            logger.info("Saved suite report to {}", reportFile);
+        }
+
+        private void summarize(TaskResult result) {
+            tasks++;
+            if (result.getStatus() != null) {
+                statusCounts[result.getStatus().ordinal()]++;
+            }
+            long taskPromptTokens = 0;
+            int taskSteps = 0;
+            for (StepResult step : result.getStepResults()) {
+                taskSteps++;
+                taskPromptTokens += step.getPromptTokens();
+                cachedTokens += step.getCachedTokens();
+                completionTokens += step.getCompletionTokens();
+            }
+            steps += taskSteps;
+            promptTokens += taskPromptTokens;
+
+            if (!taskSummaries.isEmpty()) {
+                taskSummaries.append(",\n");
+            }
+            taskSummaries.append("    {\"testName\": \"").append(escapeJson(result.getTask().getName())).append("\"");
+            taskSummaries.append(", \"status\": \"").append(result.getStatus()).append("\"");
+            taskSummaries.append(", \"executionDurationMs\": ").append(result.getExecutionDurationMs());
+            taskSummaries.append(", \"steps\": ").append(taskSteps);
+            taskSummaries.append(", \"promptTokens\": ").append(taskPromptTokens);
+            if (result.getErrorMessage() != null) {
+                taskSummaries.append(", \"errorMessage\": \"").append(escapeJson(result.getErrorMessage())).append("\"");
+            }
+            taskSummaries.append("}");
+        }
+
+        private void writeSummary(Writer json) throws IOException {
+            json.append("{\n");
+            json.append("  \"executionTime\": \"").append(executionTime.format(ISO_FORMATTER)).append("\",\n");
+            json.append("  \"executionDurationMs\": ").append(String.valueOf(System.currentTimeMillis() - start)).append(",\n");
+            json.append("  \"tasks\": ").append(String.valueOf(tasks)).append(",\n");
+            for (TaskResult.Status status : TaskResult.Status.values()) {
+                json.append("  \"").append(status.name().toLowerCase()).append("\": ")
+                        .append(String.valueOf(statusCounts[status.ordinal()])).append(",\n");
+            }
+            json.append("  \"steps\": ").append(String.valueOf(steps)).append(",\n");
+            json.append("  \"promptTokens\": ").append(String.valueOf(promptTokens)).append(",\n");
+            json.append("  \"cachedTokens\": ").append(String.valueOf(cachedTokens)).append(",\n");
+            json.append("  \"completionTokens\": ").append(String.valueOf(completionTokens)).append(",\n");
+            json.append("  \"results\": [\n");
+            json.append(taskSummaries);
+            json.append(taskSummaries.isEmpty() ? "" : "\n").append("  ]\n");
+            json.append("}\n");
+        }
+
+        /**
+         * Wait for the queued results to be written, then complete the report and the summary
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            results.add(END);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void writeTrace(Path traceFile, List<Event.Span> spans) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(traceFile)) {
+            ChromeTrace.write(writer, spans);
+        }
+        logger.info("Saved trace to {}", traceFile);
+    }
     
     /**
      * Save the test result as a JSON file
      */
     private void saveJsonReport(TaskResult result, Path jsonFile) throws IOException {
-        // Simple JSON serialization
-        StringBuilder json = new StringBuilder();
+        // Simple JSON serialization, moved into place once complete so readers such as the
+        // rollups never see a partial file
+        Path tempFile = jsonFile.resolveSibling(jsonFile.getFileName() + ".tmp");
+        try (Writer json = Files.newBufferedWriter(tempFile)) {
+            writeJson(result, json);
+        }
+        Files.move(tempFile, jsonFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void writeJson(TaskResult result, Writer json) throws IOException {
         json.append("{\n");
         json.append("  \"testName\": \"").append(escapeJson(result.getTask().getName())).append("\",\n");
         json.append("  \"testDescription\": \"").append(escapeJson(result.getTask().getDescription())).append("\",\n");
-        json.append("  \"status\": \"").append(result.getStatus()).append("\",\n");
+        json.append("  \"status\": \"").append(String.valueOf(result.getStatus())).append("\",\n");
         json.append("  \"executionTime\": \"").append(result.getExecutionTime().format(ISO_FORMATTER)).append("\",\n");
-        json.append("  \"executionDurationMs\": ").append(result.getExecutionDurationMs()).append(",\n");
+        json.append("  \"executionDurationMs\": ").append(String.valueOf(result.getExecutionDurationMs())).append(",\n");
         
         if (result.getErrorMessage() != null) {
             json.append("  \"errorMessage\": \"").append(escapeJson(result.getErrorMessage())).append("\",\n");
         }
         
         json.append("  \"stepResults\": [\n");
-        for (int i = 0; i < result.getStepResults().size(); i++) {
-            StepResult step = result.getStepResults().get(i);
+        // Iterate rather than index, so spilled step results are streamed from disk
+        int i = 0;
+        int size = result.getStepResults().size();
+        for (StepResult step : result.getStepResults()) {
             json.append("    {\n");
             json.append("      \"step\": \"").append(escapeJson(step.getStep())).append("\",\n");
-            json.append("      \"status\": \"").append(step.getStatus()).append("\"");
+            json.append("      \"status\": \"").append(String.valueOf(step.getStatus())).append("\"");
             
             if (step.getDetails() != null) {
                 json.append(",\n      \"details\": \"").append(escapeJson(step.getDetails())).append("\"");
             }
             
+            if (step.getModel() != null) {
+                json.append(",\n      \"model\": \"").append(escapeJson(step.getModel())).append("\"");
+            }
+            
             if (step.getScreenshot() != null) {
                 json.append(",\n      \"screenshot\": \"").append(escapeJson(step.getScreenshot())).append("\"");
             }
+
+            json.append(",\n      \"durationMs\": ").append(String.valueOf(step.getDurationMs()));
+            if (step.getPromptTokens() > 0) {
+                json.append(",\n      \"promptTokens\": ").append(String.valueOf(step.getPromptTokens()));
+                json.append(",\n      \"cachedTokens\": ").append(String.valueOf(step.getCachedTokens()));
+                json.append(",\n      \"completionTokens\": ").append(String.valueOf(step.getCompletionTokens()));
+            }
+            if (step.getRetries() > 0) {
+                json.append(",\n      \"retries\": ").append(String.valueOf(step.getRetries()));
+            }
             
             json.append("\n    }");
-            if (i < result.getStepResults().size() - 1) {
+            if (++i < size) {
                 json.append(",");
             }
             json.append("\n");
         }
         json.append("  ]\n");
         json.append("}\n");
-        
-        Files.writeString(jsonFile, json.toString());
     }
     
     /**
-     * Generate a JUnit XML report from a test result
+     * Write a JUnit XML report from a test result
      */
-    private String generateJUnitXml(TaskResult result) {
-        StringBuilder xml = new StringBuilder();
+    private void writeJUnitXml(TaskResult result, Writer xml) throws IOException {
         xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        
+        writeTestSuite(result, xml, "");
+    }
+
+    /**
+     * Write the testcase standing for a task that has no step results
+     */
+    private void writeTaskCase(TaskResult result, Writer xml, String indent) throws IOException {
+        String message = escapeXml(result.getErrorMessage() != null ? result.getErrorMessage() : String.valueOf(result.getStatus()));
+        xml.append(indent).append("<testcase");
+        xml.append(" name=\"").append(escapeXml(result.getTask().getName())).append("\"");
+        xml.append(" classname=\"sh.gepetto.task\"");
+        xml.append(" time=\"").append(String.valueOf(result.getExecutionDurationMs() / 1000.0)).append("\"");
+        xml.append(">\n");
+        switch (result.getStatus() != null ? result.getStatus() : TaskResult.Status.ERROR) {
+            case SKIPPED -> xml.append(indent).append("  <skipped message=\"").append(message).append("\"/>\n");
+            case FAILED -> xml.append(indent).append("  <failure message=\"").append(message).append("\" type=\"sh.gepetto.StepFailure\"/>\n");
+            case ERROR -> xml.append(indent).append("  <error message=\"").append(message).append("\" type=\"sh.gepetto.StepError\"/>\n");
+            case SUCCESS -> { }
+        }
+        xml.append(indent).append("</testcase>\n");
+    }
+
+    /**
+     * Write the testsuite element of a test result, one testcase per step
+     */
+    private void writeTestSuite(TaskResult result, Writer xml, String indent) throws IOException {
         // Calculate test statistics
         int failures = 0;
         int errors = 0;
-        int tasks = result.getStepResults().size();
+        int skipped = 0;
+        int tests = result.getStepResults().size();
+        // A task that never ran a step, e.g. skipped after a dependency failed, is reported as a
+        // single testcase of its own, so the counts stay consistent
+        boolean taskCase = tests == 0;
+        if (taskCase) {
+            tests = 1;
+        }
         
         if (result.getStatus() == TaskResult.Status.FAILED) {
             failures = 1;
         } else if (result.getStatus() == TaskResult.Status.ERROR) {
             errors = 1;
+        } else if (result.getStatus() == TaskResult.Status.SKIPPED) {
+            skipped = 1;
         }
         
         // Build the testsuite element
-        xml.append("<testsuite");
+        xml.append(indent).append("<testsuite");
         xml.append(" name=\"").append(escapeXml(result.getTask().getName())).append("\"");
-        xml.append(" tasks=\"").append(tasks).append("\"");
-        xml.append(" failures=\"").append(failures).append("\"");
-        xml.append(" errors=\"").append(errors).append("\"");
-        xml.append(" skipped=\"0\"");
+        xml.append(" tests=\"").append(String.valueOf(tests)).append("\"");
+        xml.append(" failures=\"").append(String.valueOf(failures)).append("\"");
+        xml.append(" errors=\"").append(String.valueOf(errors)).append("\"");
+        xml.append(" skipped=\"").append(String.valueOf(skipped)).append("\"");
         xml.append(" hostname=\"gepetto\"");
-        xml.append(" time=\"").append(result.getExecutionDurationMs() / 1000.0).append("\"");
+        xml.append(" time=\"").append(String.valueOf(result.getExecutionDurationMs() / 1000.0)).append("\"");
         xml.append(" timestamp=\"").append(result.getExecutionTime().format(ISO_FORMATTER)).append("\"");
         xml.append(">\n");
         
         // Add test properties
-        xml.append("  <properties>\n");
-        xml.append("    <property name=\"testName\" value=\"").append(escapeXml(result.getTask().getName())).append("\"/>\n");
-        xml.append("    <property name=\"testDescription\" value=\"").append(escapeXml(result.getTask().getDescription())).append("\"/>\n");
-        xml.append("  </properties>\n");
+        xml.append(indent).append("  <properties>\n");
+        xml.append(indent).append("    <property name=\"testName\" value=\"").append(escapeXml(result.getTask().getName())).append("\"/>\n");
+        xml.append(indent).append("    <property name=\"testDescription\" value=\"").append(escapeXml(result.getTask().getDescription())).append("\"/>\n");
+        xml.append(indent).append("  </properties>\n");
         
+        if (taskCase) {
+            writeTaskCase(result, xml, indent + "  ");
+        }
+
         // Add test cases (steps)
         for (StepResult step : result.getStepResults()) {
-            xml.append("  <testcase");
+            xml.append(indent).append("  <testcase");
             xml.append(" name=\"").append(escapeXml(step.getStep())).append("\"");
             xml.append(" classname=\"sh.gepetto.task\"");
-            
-            // If we have timing info for individual steps, we could add it here
+            xml.append(" time=\"").append(String.valueOf(step.getDurationMs() / 1000.0)).append("\"");
             xml.append(">\n");
             
             // Add failure or error information if any
             if (step.getStatus() == TaskResult.Status.FAILED) {
-                xml.append("    <failure");
+                xml.append(indent).append("    <failure");
                 xml.append(" message=\"Step failed\"");
                 xml.append(" type=\"sh.gepetto.StepFailure\"");
                 xml.append(">");
@@ -155,7 +422,7 @@ public class JUnitReportService {
                 }
                 xml.append("</failure>\n");
             } else if (step.getStatus() == TaskResult.Status.ERROR) {
-                xml.append("    <error");
+                xml.append(indent).append("    <error");
                 xml.append(" message=\"Step error\"");
                 xml.append(" type=\"sh.gepetto.StepError\"");
                 xml.append(">");
@@ -167,23 +434,22 @@ public class JUnitReportService {
             
             // Add system-out with details if any
             if (step.getDetails() != null) {
-                xml.append("    <system-out>");
+                xml.append(indent).append("    <system-out>");
                 xml.append(escapeXml(step.getDetails()));
                 xml.append("</system-out>\n");
             }
             
-            xml.append("  </testcase>\n");
+            xml.append(indent).append("  </testcase>\n");
         }
         
         // Add main error if any
         if (result.getErrorMessage() != null) {
-            xml.append("  <system-err>");
+            xml.append(indent).append("  <system-err>");
             xml.append(escapeXml(result.getErrorMessage()));
             xml.append("</system-err>\n");
         }
         
-        xml.append("</testsuite>\n");
-        return xml.toString();
+        xml.append(indent).append("</testsuite>\n");
     }
     
     /**
@@ -0,0 +1,117 @@
+package sh.gepetto.app.service;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
+import sh.gepetto.app.model.Configuration;
+import sh.gepetto.app.model.StepResult;
+import sh.gepetto.app.model.TaskDetails;
+import sh.gepetto.app.model.TaskResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Service running a task over and over as a number of concurrent virtual users, recording
+ * the latency of each step and tool in a histogram
+ */
+@Service
+public class LoadTestService {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestService.class);
+
+    /**
+     * Latencies in milliseconds of the whole task, of each of its steps and of each tool it
+     * called, by tool name, over all the iterations of all users
+     */
+    public record LoadResult(TaskDetails task, Histogram iterations, AtomicLong failedIterations,
+                             List<Histogram> steps, AtomicLongArray stepErrors,
+                             Map<String, Histogram> tools, Map<String, AtomicLong> toolErrors) {}
+
+    private final TaskExecutionService taskExecutionService;
+    private final EventBus eventBus;
+
+    public LoadTestService(TaskExecutionService taskExecutionService, EventBus eventBus) {
+        this.taskExecutionService = taskExecutionService;
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Run the task as concurrent users until the duration elapsed. Users start one after the
+     * other over the ramp-up time, then each one runs the task again as soon as it finished.
+     * Iterations under way when the time is up are completed.
+     *
+     * @param configuration the task configuration
+     * @param task          the task to run
+     * @param users         the number of concurrent users
+     * @param duration      the duration of the test, ramp-up included
+     * @param ramp          the time over which users are started
+     */
+    public LoadResult run(Configuration configuration, TaskDetails task, int users, Duration duration, Duration ramp)
+            throws InterruptedException {
+        List<Histogram> steps = new ArrayList<>();
+        for (int i = 0; i < task.getSteps().size(); i++) {
+            steps.add(new ConcurrentHistogram(3));
+        }
+        LoadResult result = new LoadResult(task, new ConcurrentHistogram(3), new AtomicLong(),
+                steps, new AtomicLongArray(task.getSteps().size()), new TreeMap<>(), new TreeMap<>());
+
+        // Tool calls are only seen on the event bus, whose single dispatcher thread records them
+        try (EventBus.Subscription subscription = eventBus.subscribe(event -> {
+            if (event instanceof Event.ToolCall call && task.getName().equals(call.task())) {
+                result.tools().computeIfAbsent(call.tool(), tool -> new Histogram(3)).recordValue(Math.max(0, call.durationMs()));
+                AtomicLong errors = result.toolErrors().computeIfAbsent(call.tool(), tool -> new AtomicLong());
+                if (call.failed()) {
+                    errors.incrementAndGet();
+                }
+            }
+        })) {
+            long start = System.currentTimeMillis();
+            long end = start + duration.toMillis();
+            List<Thread> threads = new ArrayList<>();
+            for (int user = 0; user < users; user++) {
+                long startAt = start + ramp.toMillis() * user / users;
+                threads.add(Thread.ofVirtual().name("user-" + user).start(() -> runUser(configuration, task, startAt, end, result)));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        return result;
+    }
+
+    private void runUser(Configuration configuration, TaskDetails task, long startAt, long end, LoadResult result) {
+        try {
+            Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        while (System.currentTimeMillis() < end) {
+            TaskResult taskResult = taskExecutionService.executeTask(configuration, task);
+            result.iterations().recordValue(Math.max(0, taskResult.getExecutionDurationMs()));
+            if (taskResult.getStatus() != TaskResult.Status.SUCCESS) {
+                result.failedIterations().incrementAndGet();
+                logger.info("Iteration of '{}' ended with {}: {}", task.getName(), taskResult.getStatus(), taskResult.getErrorMessage());
+            }
+
+            int i = 0;
+            for (StepResult stepResult : taskResult.getStepResults()) {
+                result.steps().get(i).recordValue(Math.max(0, stepResult.getDurationMs()));
+                if (stepResult.getStatus() != TaskResult.Status.SUCCESS) {
+                    result.stepErrors().incrementAndGet(i);
+                }
+                i++;
+            }
+            taskResult.releaseStepResults();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package sh.gepetto.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import sh.gepetto.app.model.DailyRollup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Service maintaining daily rollups of the results in .gepetto/results, per task, in
+ * .gepetto/cache/rollups.json.
+ * <p>
+ * Result directories are named after their timestamp, so the rollups keep a watermark per
+ * task, the last directory folded in, and an update only reads the result.json of newer
+ * directories. A run that started earlier but had not saved its result yet is kept in a
+ * small pending set, checked again on each update. Reports are then built from the
+ * rollups, whatever the size of the history.
+ */
+@Service
+public class ResultRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(ResultRollupService.class);
+
+    // Bump when the rollups change, to build them again from the results
+    private static final int FORMAT_VERSION = 3;
+
+    // Runs still writing their result at most, per task, the oldest are given up beyond
+    private static final int MAX_PENDING = 32;
+
+    private static final Pattern RESULT_DIR = Pattern.compile("\\d{8}_\\d{6}");
+
+    /**
+     * @param last    the newest result directory seen
+     * @param pending result directories up to the watermark whose result.json wasn't readable yet
+     */
+    public record Watermark(String last, TreeSet<String> pending) {}
+
+    /**
+     * @param processed watermark of the result directories folded in, by task directory
+     * @param tasks     rollups by task directory, then by day (yyyy-MM-dd)
+     */
+    public record RollupFile(int version, Map<String, Watermark> processed, Map<String, TreeMap<String, DailyRollup>> tasks) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path resultsDir = Path.of(PROJECT_DIR, RESULTS_DIR);
+    private final Path rollupsFile = Path.of(PROJECT_DIR, CACHE_DIR, ROLLUPS_CACHE_FILE);
+
+    /**
+     * Fold the results saved since the previous update into the rollups, and save them
+     *
+     * @return the rollups, by task then by day
+     */
+    public RollupFile update() throws IOException {
+        RollupFile rollups = load();
+        if (!Files.isDirectory(resultsDir)) {
+            return rollups;
+        }
+
+        int folded = 0;
+        boolean changed = false;
+        List<Path> taskDirs;
+        try (Stream<Path> files = Files.list(resultsDir)) {
+            taskDirs = files.filter(Files::isDirectory).sorted().toList();
+        }
+        for (Path taskDir : taskDirs) {
+            String task = taskDir.getFileName().toString();
+            Watermark watermark = rollups.processed().getOrDefault(task, new Watermark(null, new TreeSet<>()));
+            String last = watermark.last();
+
+            // Only names are compared, directories up to the watermark aren't touched
+            TreeSet<String> candidates = new TreeSet<>(watermark.pending());
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(taskDir)) {
+                for (Path dir : dirs) {
+                    String name = dir.getFileName().toString();
+                    if ((last == null || name.compareTo(last) > 0) && RESULT_DIR.matcher(name).matches()) {
+                        candidates.add(name);
+                    }
+                }
+            }
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            TreeSet<String> pending = new TreeSet<>();
+            for (String name : candidates) {
+                Path resultFile = taskDir.resolve(name).resolve("result.json");
+                JsonNode result = null;
+                if (Files.exists(resultFile)) {
+                    try {
+                        result = objectMapper.readTree(resultFile.toFile());
+                    } catch (IOException e) {
+                        logger.warn("Unreadable result {}, retrying on the next update: {}", resultFile, e.getMessage());
+                    }
+                } else if (!Files.isDirectory(resultFile.getParent())) {
+                    // Deleted before its result was saved
+                    continue;
+                }
+
+                if (result != null) {
+                    fold(rollups.tasks().computeIfAbsent(task, t -> new TreeMap<>()), result);
+                    folded++;
+                } else {
+                    // Still being written, pick it up on the next update
+                    pending.add(name);
+                }
+            }
+            while (pending.size() > MAX_PENDING) {
+                logger.warn("Giving up on result {} of task {}, still not saved", pending.first(), task);
+                pending.pollFirst();
+            }
+
+            String newest = candidates.last();
+            Watermark advanced = new Watermark(last != null && last.compareTo(newest) > 0 ? last : newest, pending);
+            if (!advanced.equals(watermark)) {
+                rollups.processed().put(task, advanced);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            Files.createDirectories(rollupsFile.getParent());
+            objectMapper.writeValue(rollupsFile.toFile(), rollups);
+        }
+        logger.info("Folded {} new results into the rollups", folded);
+        return rollups;
+    }
+
+    private void fold(TreeMap<String, DailyRollup> days, JsonNode result) {
+        String day = result.path("executionTime").asText("").length() >= 10
+                ? result.path("executionTime").asText().substring(0, 10)
+                : "unknown";
+        DailyRollup rollup = days.computeIfAbsent(day, d -> new DailyRollup());
+        rollup.setRuns(rollup.getRuns() + 1);
+        switch (result.path("status").asText()) {
+            case "SUCCESS" -> rollup.setPassed(rollup.getPassed() + 1);
+            case "FAILED" -> rollup.setFailed(rollup.getFailed() + 1);
+            case "SKIPPED" -> rollup.setSkipped(rollup.getSkipped() + 1);
+            default -> rollup.setErrors(rollup.getErrors() + 1);
+        }
+        rollup.getDurations().recordValue(Math.max(0, result.path("executionDurationMs").asLong()));
+        for (JsonNode step : result.path("stepResults")) {
+            rollup.setRetries(rollup.getRetries() + step.path("retries").asInt());
+            rollup.setPromptTokens(rollup.getPromptTokens() + step.path("promptTokens").asLong());
+            rollup.setCachedTokens(rollup.getCachedTokens() + step.path("cachedTokens").asLong());
+            rollup.setCompletionTokens(rollup.getCompletionTokens() + step.path("completionTokens").asLong());
+        }
+    }
+
+    private RollupFile load() {
+        if (Files.exists(rollupsFile)) {
+            try {
+                RollupFile stored = objectMapper.readValue(rollupsFile.toFile(), RollupFile.class);
+                if (stored.version() == FORMAT_VERSION && stored.processed() != null && stored.tasks() != null) {
+                    return stored;
+                }
+            } catch (IOException e) {
+                logger.warn("Rebuilding unreadable rollups {}: {}", rollupsFile, e.getMessage());
+            }
+        }
+        return new RollupFile(FORMAT_VERSION, new TreeMap<>(), new TreeMap<>());
+    }
+}
@@ -0,0 +1,255 @@
+package sh.gepetto.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import sh.gepetto.app.model.RunRecord;
+import sh.gepetto.app.model.StepResult;
+import sh.gepetto.app.model.TaskResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Service maintaining an append-only binary history of task runs.
+ * <p>
+ * Runs are stored as fixed-size records in .gepetto/history/runs.dat, in the order
+ * they were recorded, so a time range is found with a binary search on the memory
+ * mapped file. Task names are interned in tasks.idx (one name per line, the line
+ * number being the task id), and runs-&lt;id&gt;.idx lists the record numbers of each task,
+ * so querying a task only reads its own records. Histories written before the per-task
+ * index existed are scanned in full for the tasks that haven't run since.
+ */
+@Service
+public class RunHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(RunHistoryService.class);
+
+    // taskId(4) recordedAt(8) executionTime(8) durationMs(8) status(1) steps(4) passedSteps(4), padded
+    static final int RECORD_SIZE = 40;
+
+    private final Path historyDir;
+
+    public RunHistoryService() {
+        this(Path.of(PROJECT_DIR, HISTORY_DIR));
+    }
+
+    RunHistoryService(Path historyDir) {
+        this.historyDir = historyDir;
+    }
+
+    /**
+     * Append a task result to the history
+     *
+     * @param result the result to record
+     * @throws IOException if the history can't be written
+     */
+    public void record(TaskResult result) throws IOException {
+        Files.createDirectories(historyDir);
+
+        try (FileChannel channel = FileChannel.open(historyDir.resolve(HISTORY_RUNS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileLock lock = channel.lock()) {
+            int passedSteps = (int) result.getStepResults().stream()
+                    .map(StepResult::getStatus)
+                    .filter(status -> status == TaskResult.Status.SUCCESS)
+                    .count();
+
+            int taskId = taskId(result.getTask().getName());
+            int recordNumber = (int) (channel.size() / RECORD_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            buffer.putInt(taskId);
+            buffer.putLong(System.currentTimeMillis());
+            buffer.putLong(toEpochMillis(result.getExecutionTime()));
+            buffer.putLong(result.getExecutionDurationMs());
+            buffer.put(statusCode(result.getStatus() != null ? result.getStatus() : TaskResult.Status.ERROR));
+            buffer.putInt(result.getStepResults().size());
+            buffer.putInt(passedSteps);
+            buffer.rewind();
+            channel.write(buffer);
+            indexRecord(taskId, recordNumber);
+        }
+        logger.info("Recorded run of '{}' in history", result.getTask().getName());
+    }
+
+    /**
+     * Query the runs recorded since a given time
+     *
+     * @param taskName the task to filter on, or null for all tasks
+     * @param since    only return runs recorded at or after this time, or null for all runs
+     * @return the matching runs, oldest first
+     * @throws IOException if the history can't be read
+     */
+    public List<RunRecord> query(String taskName, LocalDateTime since) throws IOException {
+        List<RunRecord> records = new ArrayList<>();
+        Path runsFile = historyDir.resolve(HISTORY_RUNS_FILE);
+        if (!Files.exists(runsFile)) {
+            return records;
+        }
+
+        List<String> taskNames = taskNames();
+        int taskId = taskName != null ? taskNames.indexOf(taskName) : -1;
+        if (taskName != null && taskId < 0) {
+            return records;
+        }
+
+        try (FileChannel channel = FileChannel.open(runsFile, StandardOpenOption.READ)) {
+            int count = (int) (channel.size() / RECORD_SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * RECORD_SIZE);
+
+            // The record numbers to read, all of them unless the task has an index
+            IntUnaryOperator recordNumbers = i -> i;
+            int indexed = count;
+            Path indexFile = historyDir.resolve(HISTORY_TASK_RUNS_FILE.formatted(taskId));
+            if (taskId >= 0 && Files.exists(indexFile)) {
+                IntBuffer index = readIndex(indexFile);
+                recordNumbers = index::get;
+                indexed = index.limit();
+                while (indexed > 0 && index.get(indexed - 1) >= count) {
+                    // Indexed while the runs were read
+                    indexed--;
+                }
+            }
+
+            long sinceMillis = since != null ? toEpochMillis(since) : Long.MIN_VALUE;
+            for (int i = firstRecordedAtOrAfter(buffer, recordNumbers, indexed, sinceMillis); i < indexed; i++) {
+                int offset = recordNumbers.applyAsInt(i) * RECORD_SIZE;
+                int recordTaskId = buffer.getInt(offset);
+                if (taskId >= 0 && recordTaskId != taskId) {
+                    continue;
+                }
+
+                records.add(RunRecord.builder()
+                        .taskName(recordTaskId < taskNames.size() ? taskNames.get(recordTaskId) : "#" + recordTaskId)
+                        .executionTime(toDateTime(buffer.getLong(offset + 12)))
+                        .executionDurationMs(buffer.getLong(offset + 20))
+                        .status(status(buffer.get(offset + 28)))
+                        .steps(buffer.getInt(offset + 29))
+                        .passedSteps(buffer.getInt(offset + 33))
+                        .build());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Binary search the first of the given records recorded at or after the given time
+     */
+    private int firstRecordedAtOrAfter(MappedByteBuffer buffer, IntUnaryOperator recordNumbers, int count, long epochMillis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(recordNumbers.applyAsInt(mid) * RECORD_SIZE + 4) < epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the id of a task name, interning it if needed. Called with the runs file locked.
+     */
+    private int taskId(String taskName) throws IOException {
+        List<String> taskNames = taskNames();
+        int taskId = taskNames.indexOf(taskName);
+        if (taskId < 0) {
+            Files.writeString(historyDir.resolve(HISTORY_TASKS_FILE), taskName.replace("\n", " ") + "\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            taskId = taskNames.size();
+        }
+        return taskId;
+    }
+
+    /**
+     * Append a record number to the index of its task. Called with the runs file locked,
+     * an index is only created along with the first run of its task, so it lists them all.
+     */
+    private void indexRecord(int taskId, int recordNumber) throws IOException {
+        Path indexFile = historyDir.resolve(HISTORY_TASK_RUNS_FILE.formatted(taskId));
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        if (!Files.exists(indexFile) && recordNumber > 0) {
+            // Runs recorded before the index existed
+            buffer = buildIndex(taskId, recordNumber);
+        }
+        buffer.putInt(recordNumber);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(buffer);
+        }
+    }
+
+    private ByteBuffer buildIndex(int taskId, int count) throws IOException {
+        List<Integer> recordNumbers = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(historyDir.resolve(HISTORY_RUNS_FILE), StandardOpenOption.READ)) {
+            MappedByteBuffer runs = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                if (runs.getInt(i * RECORD_SIZE) == taskId) {
+                    recordNumbers.add(i);
+                }
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((recordNumbers.size() + 1) * Integer.BYTES);
+        recordNumbers.forEach(buffer::putInt);
+        return buffer;
+    }
+
+    private IntBuffer readIndex(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long size = channel.size() / Integer.BYTES * Integer.BYTES;
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asIntBuffer();
+        }
+    }
+
+    /**
+     * Statuses are stored as fixed codes rather than ordinals, so adding or reordering
+     * statuses doesn't change the meaning of recorded runs
+     */
+    private static byte statusCode(TaskResult.Status status) {
+        return switch (status) {
+            case SUCCESS -> 0;
+            case FAILED -> 1;
+            case ERROR -> 2;
+            case SKIPPED -> 3;
+        };
+    }
+
+    private static TaskResult.Status status(byte code) {
+        return switch (code) {
+            case 0 -> TaskResult.Status.SUCCESS;
+            case 1 -> TaskResult.Status.FAILED;
+            case 3 -> TaskResult.Status.SKIPPED;
+            default -> TaskResult.Status.ERROR;
+        };
+    }
+
+    private List<String> taskNames() throws IOException {
+        Path tasksFile = historyDir.resolve(HISTORY_TASKS_FILE);
+        return Files.exists(tasksFile) ? Files.readAllLines(tasksFile, StandardCharsets.UTF_8) : List.of();
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
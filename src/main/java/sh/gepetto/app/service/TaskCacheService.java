@@ -0,0 +1,138 @@
+package sh.gepetto.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import sh.gepetto.app.model.TaskDetails;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Service keeping parsed tasks in .gepetto/cache/tasks.json, so unchanged task files
+ * are not parsed again on every run.
+ * <p>
+ * An entry is reused as is while the file size and modification time match. When they
+ * don't, the content hash is compared, so touching a file without editing it doesn't
+ * trigger a parse either.
+ */
+@Service
+public class TaskCacheService {
+    private static final Logger logger = LoggerFactory.getLogger(TaskCacheService.class);
+
+    // Bump when the parser output changes, to drop entries parsed by an older version
+    private static final int FORMAT_VERSION = 4;
+
+    public record Entry(long size, long modified, String hash, TaskDetails task) {}
+
+    public record CacheFile(int version, Map<String, Entry> entries) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Path cacheFile;
+    private Map<String, Entry> entries;
+    private volatile boolean dirty;
+
+    public TaskCacheService() {
+        this(Path.of(PROJECT_DIR, CACHE_DIR, TASKS_CACHE_FILE));
+    }
+
+    TaskCacheService(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Get the parsed task for a file, parsing it only if it changed since it was cached
+     *
+     * @param filePath the task file
+     * @param parser   parses the file content on a cache miss
+     */
+    public TaskDetails get(Path filePath, Parser parser) throws IOException {
+        String key = filePath.toAbsolutePath().normalize().toString();
+        BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry = entries().get(key);
+        if (entry != null && entry.size() == size && entry.modified() == modified) {
+            return entry.task();
+        }
+
+        byte[] content = Files.readAllBytes(filePath);
+        String hash = hash(content);
+        TaskDetails task;
+        if (entry != null && entry.hash().equals(hash)) {
+            task = entry.task();
+        } else {
+            logger.debug("Task cache miss for {}", filePath);
+            task = parser.parse(content);
+        }
+        entries().put(key, new Entry(size, modified, hash, task));
+        dirty = true;
+        return task;
+    }
+
+    /**
+     * Drop the entry of a file, e.g. when a watcher reports it changed
+     */
+    public void invalidate(Path filePath) {
+        if (entries().remove(filePath.toAbsolutePath().normalize().toString()) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write the cache to disk if it changed since it was loaded
+     */
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            objectMapper.writeValue(cacheFile.toFile(), new CacheFile(FORMAT_VERSION, entries()));
+        } catch (IOException e) {
+            logger.warn("Failed to save task cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private synchronized Map<String, Entry> entries() {
+        if (entries == null) {
+            entries = new ConcurrentHashMap<>();
+            if (Files.exists(cacheFile)) {
+                try {
+                    CacheFile stored = objectMapper.readValue(cacheFile.toFile(), CacheFile.class);
+                    if (stored.version() == FORMAT_VERSION && stored.entries() != null) {
+                        entries.putAll(stored.entries());
+                    }
+                } catch (IOException e) {
+                    logger.warn("Ignoring unreadable task cache {}: {}", cacheFile, e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Parser {
+        TaskDetails parse(byte[] content) throws IOException;
+    }
+}
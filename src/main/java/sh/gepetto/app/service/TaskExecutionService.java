@@ -1,29 +1,83 @@
 package sh.gepetto.app.service;
 
-import org.springframework.scheduling.config.Task;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
 import sh.gepetto.app.model.Configuration;
 import sh.gepetto.app.model.TaskDetails;
 import sh.gepetto.app.model.StepResult;
 import sh.gepetto.app.model.TaskResult;
+import sh.gepetto.app.operator.StepExecution;
 import sh.gepetto.app.operator.TaskOperator;
 import sh.gepetto.app.operator.TaskRun;
-import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static sh.gepetto.app.config.Constants.*;
 
 /**
  * Service responsible for executing tasks
  */
 @Service
-@AllArgsConstructor
 public class TaskExecutionService {
     private static final Logger logger = LoggerFactory.getLogger(TaskExecutionService.class);
     
     private final TaskOperator taskOperator;
+    private final TaskParser taskParser;
+
+    // Progress goes to the event bus, execution threads never write to the console
+    private final EventBus eventBus;
+
+    // Steps waiting on the LLM or tools across all running tasks, bounded to apply backpressure
+    private final Semaphore inFlightSteps;
+
+    // Time a step may take before it is interrupted and ends in ERROR, zero for no limit
+    private final Duration stepTimeout;
+
+    // The run that last started on the shared browser, only that one can be resumed
+    private volatile String lastBrowserRunId;
+
+    // Fixtures run or running since the last reset, by name, so tasks only wait on their own
+    // fixture. A fixture that didn't pass is dropped once its waiting tasks saw it, and run again
+    private final Map<String, CompletableFuture<TaskResult>> fixtureResults = new ConcurrentHashMap<>();
+
+    public TaskExecutionService(TaskOperator taskOperator,
+                                TaskParser taskParser,
+                                EventBus eventBus,
+                                @Value("${gepetto.operator.max-in-flight-steps:256}") int maxInFlightSteps,
+                                @Value("${gepetto.operator.step-timeout:0s}") Duration stepTimeout) {
+        this.taskOperator = taskOperator;
+        this.taskParser = taskParser;
+        this.eventBus = eventBus;
+        this.inFlightSteps = new Semaphore(Math.max(1, maxInFlightSteps));
+        this.stepTimeout = stepTimeout;
+    }
 
     /**
      * Execute a task with the given configuration
@@ -33,6 +87,45 @@ public class TaskExecutionService {
      * @return the task result
      */
     public TaskResult executeTask(Configuration configuration, TaskDetails task) {
+        return executeTask(configuration, task, null, List.of());
+    }
+
+    /**
+     * Run only the steps appended to a task since a previous successful run, continuing
+     * from the browser and conversation state that run left behind. Only possible when no
+     * other run used the browser since.
+     *
+     * @param configuration the task configuration
+     * @param previous      the result of the previous run of the task
+     * @param task          the task, whose steps start with those of the previous run
+     * @return the task result, or null if the task can't be resumed from that run
+     */
+    public TaskResult resumeTask(Configuration configuration, TaskResult previous, TaskDetails task) {
+        TaskDetails previousTask = previous.getTask();
+        int completed = previousTask.getSteps().size();
+        if (!taskOperator.canResume()
+                || !previous.getRunId().equals(lastBrowserRunId)
+                || previous.getStatus() != TaskResult.Status.SUCCESS
+                || task.getSteps().size() <= completed
+                || !task.getSteps().subList(0, completed).equals(previousTask.getSteps())) {
+            return null;
+        }
+        for (int i = 0; i < completed; i++) {
+            if (!task.getStepOptions(i).equals(previousTask.getStepOptions(i))) {
+                return null;
+            }
+        }
+
+        eventBus.publish(new Event.Message(null, task.getName(), "\n===== RESUMING TASK: " + task.getName() + " after step " + completed + " ====="));
+        return executeTask(configuration, task, null, previous.getStepResults());
+    }
+
+    /**
+     * Execute a task on the given browser profile directory, or on a temporary copy of
+     * its fixture's profile when it has one
+     */
+    private TaskResult executeTask(Configuration configuration, TaskDetails task, Path profileDir,
+                                   List<StepResult> completedSteps) {
         logger.info("Executing task '{}' with variables {}", task.getName(), configuration.getVariables());
 
         // Create a task result
@@ -45,62 +138,237 @@ public class TaskExecutionService {
         // Record start time to calculate duration
         long startTime = System.currentTimeMillis();
 
+        // Steps already run in a previous run are replayed into the history, not executed
+        result.getStepResults().addAll(completedSteps);
+
+        TaskRun taskRun = TaskRun.builder()
+                .id(UUID.randomUUID().toString())
+                .task(task)
+                .result(result)
+                .build();
+        result.setRunId(taskRun.getId());
+        EventBus.OpenSpan taskSpan = eventBus.span(taskRun.getId(), task.getName(), "task", task.getName());
+
+        Path temporaryProfile = null;
         try {
             // Validate all variables up front before executing steps
             validateAllRequiredVariables(configuration, task);
 
-            // Processing task steps
-            TaskRun taskRun = TaskRun.builder()
-                    .id(UUID.randomUUID().toString())
-                    .task(task)
-                    .result(result)
-                    .build();
+            // Start from the browser state left by the fixture, if any
+            taskRun.setUserDataDir(profileDir);
+            if (task.getRequires() != null && completedSteps.isEmpty()) {
+                Path fixtureProfile = runFixture(configuration, task.getRequires());
+                if (profileDir == null) {
+                    temporaryProfile = Files.createTempDirectory(fixtureProfile.getParent(), task.getRequires() + "-");
+                    taskRun.setUserDataDir(temporaryProfile);
+                }
+                copyProfile(fixtureProfile, taskRun.getUserDataDir());
+            }
 
-            processTaskSteps(configuration, taskRun);
+            // Processing task steps
+            taskOperator.start(taskRun);
+            lastBrowserRunId = taskRun.getId();
+            processTaskSteps(configuration, taskRun, completedSteps.size());
 
             // If all steps passed, mark the task as passed
-            result.setStatus(TaskResult.Status.SUCCESS);
+            if (result.getStatus() == null) {
+                result.setStatus(TaskResult.Status.SUCCESS);
+            }
         } catch (IllegalArgumentException e) {
             // If a variable is missing, mark the task as an error
             result.setStatus(TaskResult.Status.ERROR);
             result.setErrorMessage(e.getMessage());
             // Log without stack trace for variable errors
             logger.error("Error executing task - missing variable: {}", e.getMessage());
-            System.out.println("\n❌ Error: " + e.getMessage());
+            eventBus.publish(new Event.Message(taskRun.getId(), task.getName(), "\n❌ Error: " + e.getMessage()));
         } catch (Exception e) {
             // If an exception occurs, mark the task as an error
             result.setStatus(TaskResult.Status.ERROR);
             result.setErrorMessage(e.getMessage());
             // Log without stack trace for other errors
             logger.error("Error executing task: {}", e.getMessage());
-            System.out.println("\n❌ Error: " + e.getMessage());
+            eventBus.publish(new Event.Message(taskRun.getId(), task.getName(), "\n❌ Error: " + e.getMessage()));
         } finally {
+            taskOperator.finish(taskRun);
+            if (temporaryProfile != null) {
+                deleteProfile(temporaryProfile);
+            }
+
             // Calculate and set execution duration
             long endTime = System.currentTimeMillis();
             result.setExecutionDurationMs(endTime - startTime);
         }
+        taskSpan.arg("status", result.getStatus()).end();
+        eventBus.publish(new Event.TaskFinished(taskRun.getId(), task.getName(), result.getStatus(),
+                result.getErrorMessage(), result.getExecutionDurationMs()));
 
         logger.info("Task execution completed with status: {}", result.getStatus());
         return result;
     }
 
     /**
-     * Process each step in the task and add results to the task result
+     * Forget the fixtures run so far, so the next task requiring one runs it again. Called
+     * at the start of a command, and by watch mode when a fixture or the configuration changed.
      */
-    private void processTaskSteps(Configuration configuration, TaskRun taskRun) {
+    public void resetFixtures() {
+        fixtureResults.clear();
+    }
+
+    /**
+     * Run the named fixture task once until the fixtures are reset and return the browser
+     * profile it left behind. Dependent tasks each start from a copy of that profile.
+     *
+     * @throws IllegalStateException if the fixture didn't succeed
+     */
+    private Path runFixture(Configuration configuration, String name) throws IOException {
+        checkFixtureChain(name);
+        Path profileDir = Paths.get(PROJECT_DIR, FIXTURES_DIR, name, "profile");
+        CompletableFuture<TaskResult> started = new CompletableFuture<>();
+        CompletableFuture<TaskResult> fixture = fixtureResults.putIfAbsent(name, started);
+        if (fixture == null) {
+            fixture = started;
+            try {
+                Path path = taskParser.findTaskFile(name);
+                if (path == null) {
+                    throw new IllegalArgumentException("Fixture task not found: " + name);
+                }
+
+                eventBus.publish(new Event.Message(null, name, "\n===== RUNNING FIXTURE: " + name + " ====="));
+                deleteProfile(profileDir);
+                Files.createDirectories(profileDir);
+                TaskResult completed = executeTask(configuration, taskParser.parseTaskFile(path), profileDir, List.of());
+                // Only its status is kept
+                completed.releaseStepResults();
+                fixture.complete(completed);
+                if (completed.getStatus() != TaskResult.Status.SUCCESS) {
+                    fixtureResults.remove(name, fixture);
+                }
+            } catch (IOException | RuntimeException e) {
+                fixture.completeExceptionally(e);
+                fixtureResults.remove(name, fixture);
+                throw e;
+            }
+        }
+
+        TaskResult fixtureResult;
+        try {
+            fixtureResult = fixture.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new UncheckedIOException((IOException) e.getCause());
+        }
+
+        if (fixtureResult.getStatus() != TaskResult.Status.SUCCESS) {
+            throw new IllegalStateException("Fixture '" + name + "' ended with " + fixtureResult.getStatus()
+                    + (fixtureResult.getErrorMessage() != null ? ": " + fixtureResult.getErrorMessage() : ""));
+        }
+        return profileDir;
+    }
+
+    /**
+     * Follow the chain of fixtures required by the named one, so a cycle fails up front
+     * instead of leaving its tasks waiting on each other
+     *
+     * @throws IllegalArgumentException if the chain leads back to a fixture already in it
+     */
+    private void checkFixtureChain(String name) throws IOException {
+        List<String> chain = new ArrayList<>();
+        while (name != null) {
+            chain.add(name);
+            if (chain.indexOf(name) < chain.size() - 1) {
+                throw new IllegalArgumentException("Fixture cycle: " + String.join(" -> ", chain));
+            }
+            Path path = taskParser.findTaskFile(name);
+            if (path == null) {
+                return;
+            }
+            name = taskParser.parseTaskFile(path).getRequires();
+        }
+    }
+
+    private void copyProfile(Path source, Path target) throws IOException {
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : files.toList()) {
+                // Skip the browser's lock files, they only make sense for a running instance
+                if (file.getFileName().toString().startsWith("Singleton")) {
+                    continue;
+                }
+                Path destination = target.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(file, destination, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                }
+            }
+        }
+    }
+
+    private void deleteProfile(Path profileDir) {
+        if (!Files.exists(profileDir, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(profileDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to delete browser profile {}: {}", profileDir, e.getMessage());
+        }
+    }
+
+    /**
+     * Process each step in the task, from the given one, and add results to the task result
+     */
+    private void processTaskSteps(Configuration configuration, TaskRun taskRun, int firstStep) {
         // First, plan the task run with the TaskOperator
         TaskDetails task = taskRun.getTask();
         TaskResult result = taskRun.getResult();
-        System.out.println("\n===== STARTING TASK: " + task.getName() + " =====");
-        System.out.println("Description: " + task.getDescription());
-        System.out.println("Total steps: " + task.getSteps().size());
+        eventBus.publish(new Event.TaskStarted(taskRun.getId(), task.getName(), task.getDescription(), task.getSteps().size()));
 
         logger.info("Task run planned with ID: {}", taskRun.getId());
         
         // Process each step in the task
-        for (int i = 0; i < task.getSteps().size(); i++) {
+        // Steps before this one run on their own, after a batch that didn't pass
+        int aloneUntil = firstStep;
+        int i = firstStep;
+        while (i < task.getSteps().size()) {
+            // In batch mode, run a group of consecutive steps in a single agent turn
+            int batchEnd = i < aloneUntil ? i + 1 : batchEnd(configuration, task, i);
+            if (batchEnd - i > 1) {
+                eventBus.publish(new Event.StepStarted(taskRun.getId(), task.getName(), i, batchEnd - i, task.getSteps().get(i)));
+                List<String> processedSteps = new ArrayList<>();
+                for (int j = i; j < batchEnd; j++) {
+                    processedSteps.add(replaceVariables(configuration, task.getSteps().get(j)));
+                }
+                logger.info("Processing batched steps: {}", processedSteps);
+
+                long batchStart = System.currentTimeMillis();
+                List<StepResult> stepResults;
+                try (EventBus.OpenSpan span = eventBus.span(taskRun.getId(), task.getName(), "step", "Steps " + (i + 1) + "-" + batchEnd)) {
+                    Duration batchTimeout = stepTimeout.multipliedBy(processedSteps.size());
+                    stepResults = runStep("Steps " + (i + 1) + "-" + batchEnd, batchTimeout,
+                            () -> taskOperator.nextStepsAsync(taskRun, processedSteps),
+                            () -> List.of(timedOut(processedSteps.get(0), batchTimeout)));
+                    span.arg("model", stepResults.get(0).getModel());
+                }
+                splitDuration(stepResults, System.currentTimeMillis() - batchStart);
+
+                // Keep the leading successes, the steps of the batch from the first one that
+                // didn't pass are retried on their own
+                for (StepResult stepResult : stepResults) {
+                    if (stepResult.getStatus() != TaskResult.Status.SUCCESS) {
+                        logger.info("Batched step '{}' ended with {}, retrying the rest of the batch alone", stepResult.getStep(), stepResult.getStatus());
+                        aloneUntil = batchEnd;
+                        break;
+                    }
+                    result.getStepResults().add(stepResult);
+                    publishStepFinished(taskRun, i, stepResult);
+                    i++;
+                }
+                continue;
+            }
+
             String step = task.getSteps().get(i);
-            System.out.println("\n===== STEP " + (i + 1) + "/" + task.getSteps().size() + " " + step + "=====");
+            eventBus.publish(new Event.StepStarted(taskRun.getId(), task.getName(), i, 1, step));
 
             // Replace variables in the step
             // We've already validated all variables exist, so this should not fail
@@ -108,27 +376,119 @@ public class TaskExecutionService {
             logger.info("Processing step: {}", processedStep);
             
             // Use the TaskOperator to execute the step
-            StepResult stepResult = taskOperator.nextStep(taskRun, processedStep);
+            long stepStart = System.currentTimeMillis();
+            StepResult stepResult;
+            try (EventBus.OpenSpan span = eventBus.span(taskRun.getId(), task.getName(), "step", step)) {
+                stepResult = runStep(taskRun, processedStep, task.getStepOptions(i));
+                span.arg("status", stepResult.getStatus()).arg("model", stepResult.getModel());
+            }
+            stepResult.setDurationMs(System.currentTimeMillis() - stepStart);
             logger.info("Step result: {}", stepResult.getStatus());
-            
+
             // Add the step result to the task result
             result.getStepResults().add(stepResult);
-            
+            publishStepFinished(taskRun, i, stepResult);
+
             // If the step failed, mark the task as failed and break
             if (stepResult.getStatus() == TaskResult.Status.FAILED ||
                 stepResult.getStatus() == TaskResult.Status.ERROR) {
                 result.setStatus(stepResult.getStatus());
                 result.setErrorMessage("Step failed: " + processedStep);
-                System.out.println("\n❌ Step " + (i + 1) + " failed with status: " + stepResult.getStatus());
                 break;
-            } else {
-                System.out.println("\n✅ Step " + (i + 1) + " passed: " + stepResult.getDetails());
             }
+            i++;
         }
-        
-        System.out.println("\n===== TASK EXECUTION COMPLETED =====");
+    }
+
+    /**
+     * Spread the wall-clock time of a batch evenly over its steps, so step timings stay
+     * comparable with steps run alone and still add up to the time of the turn
+     */
+    private static void splitDuration(List<StepResult> stepResults, long durationMs) {
+        int count = stepResults.size();
+        for (int j = 0; j < count; j++) {
+            stepResults.get(j).setDurationMs(durationMs * (j + 1) / count - durationMs * j / count);
+        }
+    }
+
+    private void publishStepFinished(TaskRun taskRun, int index, StepResult stepResult) {
+        eventBus.publish(new Event.StepFinished(taskRun.getId(), taskRun.getTask().getName(), index, stepResult.getStep(),
+                stepResult.getStatus(), stepResult.getDetails(), stepResult.getModel(), stepResult.getDurationMs()));
     }
     
+    /**
+     * Run a step through the asynchronous operator API, waiting for a free in-flight slot
+     * first and giving up on the step once it exceeds the step timeout
+     */
+    private StepResult runStep(TaskRun taskRun, String input, Map<String, String> options) {
+        return runStep(input, stepTimeout, () -> taskOperator.nextStepAsync(taskRun, input, options),
+                () -> timedOut(input, stepTimeout));
+    }
+
+    private static StepResult timedOut(String input, Duration timeout) {
+        return StepResult.builder()
+                .step(input)
+                .status(TaskResult.Status.ERROR)
+                .details("Step timed out after " + timeout.toSeconds() + "s")
+                .build();
+    }
+
+    /**
+     * Run the work of one agent turn, holding an in-flight slot until that work has ended.
+     * A turn exceeding the step timeout is interrupted, and only once it stopped touching
+     * the browser session is the timed out result returned.
+     */
+    private <T> T runStep(String description, Duration timeout, Supplier<StepExecution<T>> start, Supplier<T> timedOut) {
+        inFlightSteps.acquireUninterruptibly();
+        StepExecution<T> execution;
+        try {
+            execution = start.get();
+        } catch (RuntimeException e) {
+            inFlightSteps.release();
+            throw e;
+        }
+        execution.result().whenComplete((stepResult, e) -> inFlightSteps.release());
+
+        try {
+            return timeout.isZero()
+                    ? execution.result().join()
+                    : execution.result().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.info("Step '{}' timed out after {}, waiting for it to stop", description, timeout);
+            execution.interrupt();
+            awaitStopped(execution);
+            return timedOut.get();
+        } catch (InterruptedException e) {
+            execution.interrupt();
+            awaitStopped(execution);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while running step '" + description + "'");
+        } catch (ExecutionException | CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new CompletionException(e.getCause());
+        }
+    }
+
+    private static void awaitStopped(StepExecution<?> execution) {
+        execution.result().handle((stepResult, e) -> null).join();
+    }
+
+    /**
+     * Find the end (exclusive) of the batch starting at the given step. Steps with
+     * per-step options always run on their own.
+     */
+    private int batchEnd(Configuration configuration, TaskDetails task, int start) {
+        int end = start + 1;
+        if (!task.getStepOptions(start).isEmpty()) {
+            return end;
+        }
+        while (end < task.getSteps().size()
+                && end - start < configuration.getBatchSize()
+                && task.getStepOptions(end).isEmpty()) {
+            end++;
+        }
+        return end;
+    }
+
     /**
      * Validate that all required variables are defined before executing tasks
      * This method scans all steps for variable references and ensures they're defined
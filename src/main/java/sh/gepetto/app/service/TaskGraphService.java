@@ -0,0 +1,190 @@
+package sh.gepetto.app.service;
+
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
+import sh.gepetto.app.model.Configuration;
+import sh.gepetto.app.model.TaskDetails;
+import sh.gepetto.app.model.TaskResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import static sh.gepetto.app.config.Constants.*;
+
+/**
+ * Service running a set of tasks along the graph formed by their depends_on metadata.
+ * Independent tasks run concurrently, dependents of a task that didn't pass are skipped.
+ */
+@Service
+@AllArgsConstructor
+public class TaskGraphService {
+    private static final Logger logger = LoggerFactory.getLogger(TaskGraphService.class);
+
+    private final TaskParser taskParser;
+    private final TaskExecutionService taskExecutionService;
+    private final EventBus eventBus;
+
+    /**
+     * Load the given tasks and, transitively, the tasks they depend on
+     *
+     * @param taskNames the names of the task files, without extension
+     * @return the tasks by name, each listed after its dependencies
+     * @throws IllegalArgumentException if a task is missing or the dependencies form a cycle
+     */
+    public Map<String, TaskDetails> resolve(List<String> taskNames) throws IOException {
+        Map<String, TaskDetails> tasks = new LinkedHashMap<>();
+        for (String taskName : taskNames) {
+            visit(taskName, tasks, new ArrayList<>());
+        }
+        return tasks;
+    }
+
+    /**
+     * Load every task of the project, parsing the task directory in parallel
+     *
+     * @return the tasks by name, each listed after its dependencies
+     */
+    public Map<String, TaskDetails> resolveAll() throws IOException {
+        List<String> taskNames = new ArrayList<>();
+        for (Path file : taskParser.parseDirectory(Paths.get(PROJECT_DIR, TASKS_DIR)).keySet()) {
+            taskNames.add(TaskParser.baseName(file));
+        }
+        return resolve(taskNames);
+    }
+
+    private void visit(String taskName, Map<String, TaskDetails> tasks, List<String> path) throws IOException {
+        if (path.contains(taskName)) {
+            path.add(taskName);
+            throw new IllegalArgumentException("Dependency cycle: " + String.join(" -> ", path.subList(path.indexOf(taskName), path.size())));
+        }
+        if (tasks.containsKey(taskName)) {
+            return;
+        }
+
+        Path file = taskParser.findTaskFile(taskName);
+        if (file == null) {
+            throw new IllegalArgumentException("Task not found: " + taskName);
+        }
+        TaskDetails task = taskParser.parseTaskFile(file);
+
+        path.add(taskName);
+        if (task.getDependsOn() != null) {
+            for (String dependency : task.getDependsOn()) {
+                visit(dependency, tasks, path);
+            }
+        }
+        path.remove(path.size() - 1);
+
+        tasks.put(taskName, task);
+    }
+
+    /**
+     * Execute the tasks on virtual threads, each one as soon as all its dependencies passed
+     *
+     * @param configuration the task configuration
+     * @param tasks         the tasks by name, as returned by {@link #resolve(List)}
+     * @param parallelism   the maximum number of tasks running at once
+     * @param onResult      called with each result as soon as its task is done
+     * @return the results, in the order of the given tasks
+     */
+    public List<TaskResult> execute(Configuration configuration, Map<String, TaskDetails> tasks, int parallelism,
+                                    Consumer<TaskResult> onResult) {
+        Map<String, CompletableFuture<TaskResult>> nodes = new LinkedHashMap<>();
+        // Tasks mostly wait on the LLM and the browser, a permit per running task bounds them
+        // without holding a platform thread each
+        Semaphore running = new Semaphore(Math.max(1, parallelism));
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            // Dependencies come first, so their nodes always exist when a dependent is added
+            for (Map.Entry<String, TaskDetails> entry : tasks.entrySet()) {
+                TaskDetails task = entry.getValue();
+                Map<String, CompletableFuture<TaskResult>> upstream = new LinkedHashMap<>();
+                if (task.getDependsOn() != null) {
+                    task.getDependsOn().forEach(dependency -> upstream.put(dependency, nodes.get(dependency)));
+                }
+
+                CompletableFuture<TaskResult> node = CompletableFuture.allOf(upstream.values().toArray(CompletableFuture[]::new)).thenApplyAsync(ignored -> {
+                    Set<String> failed = new HashSet<>();
+                    upstream.forEach((dependency, future) -> {
+                        if (future.join().getStatus() != TaskResult.Status.SUCCESS) {
+                            failed.add(dependency);
+                        }
+                    });
+                    TaskResult result;
+                    if (failed.isEmpty()) {
+                        running.acquireUninterruptibly();
+                        try {
+                            result = taskExecutionService.executeTask(configuration, task);
+                        } finally {
+                            running.release();
+                        }
+                    } else {
+                        result = skipped(task, failed);
+                    }
+                    onResult.accept(result);
+                    return result;
+                }, executor);
+                nodes.put(entry.getKey(), node);
+            }
+
+            return nodes.values().stream().map(CompletableFuture::join).toList();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Execute the tasks of a bundle file one at a time as they are read, so the bundle is
+     * never loaded at once. A task only runs when the tasks it depends on, referred to by
+     * name, came earlier in the bundle and passed.
+     *
+     * @param configuration the task configuration
+     * @param bundle        the bundle file
+     * @param onResult      called with each result as soon as its task is done
+     */
+    public void executeBundle(Configuration configuration, Path bundle, Consumer<TaskResult> onResult) throws IOException {
+        Map<String, TaskResult.Status> statuses = new HashMap<>();
+        taskParser.parseBundle(bundle, task -> {
+            Set<String> failed = new HashSet<>();
+            if (task.getDependsOn() != null) {
+                task.getDependsOn().stream()
+                        .filter(dependency -> statuses.get(dependency) != TaskResult.Status.SUCCESS)
+                        .forEach(failed::add);
+            }
+            TaskResult result = failed.isEmpty()
+                    ? taskExecutionService.executeTask(configuration, task)
+                    : skipped(task, failed);
+            statuses.put(task.getName(), result.getStatus());
+            onResult.accept(result);
+        });
+    }
+
+    private TaskResult skipped(TaskDetails task, Set<String> failedDependencies) {
+        logger.info("Skipping task '{}', dependencies did not pass: {}", task.getName(), failedDependencies);
+        eventBus.publish(new Event.Message(null, task.getName(), "\n⏭️ Skipping task " + task.getName() + ", dependencies did not pass: " + String.join(", ", failedDependencies)));
+        return TaskResult.builder()
+                .task(task)
+                .status(TaskResult.Status.SKIPPED)
+                .executionTime(LocalDateTime.now())
+                .errorMessage("Dependencies did not pass: " + String.join(", ", failedDependencies))
+                .build();
+    }
+}
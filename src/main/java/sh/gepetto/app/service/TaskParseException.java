@@ -0,0 +1,42 @@
+package sh.gepetto.app.service;
+
+import java.io.IOException;
+
+/**
+ * Error in the content of a task file, with the position it was found at
+ */
+public class TaskParseException extends IOException {
+    private final String source;
+    private final int line;
+    private final int column;
+
+    public TaskParseException(String source, int line, int column, String message) {
+        super(source + ":" + line + ":" + column + ": " + message);
+        this.source = source;
+        this.line = line;
+        this.column = column;
+    }
+
+    public TaskParseException(String source, int line, int column, String message, Throwable cause) {
+        this(source, line, column, message);
+        initCause(cause);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * One-based line of the error
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * One-based column of the error
+     */
+    public int getColumn() {
+        return column;
+    }
+}
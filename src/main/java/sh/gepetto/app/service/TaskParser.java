@@ -1,122 +1,252 @@
 package sh.gepetto.app.service;
 
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import sh.gepetto.app.model.TaskDetails;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static sh.gepetto.app.config.Constants.*;
 
 /**
- * Service for parsing task files into TaskDetails objects
+ * Service for parsing task files into TaskDetails objects. Task files are either in
+ * the text format described in {@link TaskReader} or in the YAML/JSON format described
+ * in {@link TaskSpec}, depending on their extension.
  */
 @Service
 public class TaskParser {
     private static final Logger logger = LoggerFactory.getLogger(TaskParser.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    private final TaskCacheService taskCache;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+    public TaskParser(TaskCacheService taskCache) {
+        this.taskCache = taskCache;
+    }
+
     /**
-     * Parse a task file into a TaskDetails object
+     * Parse a task file into a TaskDetails object, reusing the cached result if the
+     * file didn't change
      *
      * @param filePath the path to the task file
      * @return the parsed TaskDetails
+     * @throws TaskParseException if the file is malformed or holds several tasks
      * @throws IOException if an error occurs reading the file
      */
     public TaskDetails parseTaskFile(Path filePath) throws IOException {
-        logger.info("Parsing task file: {}", filePath);
-
-        TaskDetails task = new TaskDetails();
-
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            String line;
-            boolean inTaskSection = false;
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                // Skip empty lines and comments
-                if (line.isEmpty() || line.startsWith("#")) {
-                    continue;
-                }
-
-                // Parse task metadata
-                if (line.startsWith("description:")) {
-                    task.setDescription(extractQuotedValue(line));
-                } else if (line.startsWith("tags:")) {
-                    String tagsStr = line.substring(5).trim();
-                    if (tagsStr.startsWith("[") && tagsStr.endsWith("]")) {
-                        tagsStr = tagsStr.substring(1, tagsStr.length() - 1);
-                    }
-                    List<String> tags = Arrays.asList(tagsStr.split(","));
-                    task.setTags(tags.stream().map(String::trim).toList());
-                } else if (line.startsWith("author:")) {
-                    task.setAuthor(extractQuotedValue(line));
-                } else if (line.startsWith("created:")) {
-                    String dateStr = extractQuotedValue(line);
-                    task.setCreated(LocalDate.parse(dateStr, DATE_FORMATTER).atStartOfDay());
-                }
+        TaskDetails task = taskCache.get(filePath, content -> parse(filePath, content));
+        taskCache.flush();
+        return task;
+    }
 
-                // Parse task steps
-                if (line.equals("Task:")) {
-                    inTaskSection = true;
-                    continue;
-                }
+    /**
+     * Parse all the task files of a directory, in parallel
+     *
+     * @param directory the directory to scan, not recursively
+     * @return the parsed tasks by file, in file name order
+     * @throws IOException if an error occurs reading a file
+     */
+    public Map<Path, TaskDetails> parseDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(file -> Files.isRegularFile(file) && isValidTaskFile(file)).sorted().toList();
+        }
 
-                if (inTaskSection) {
-                    task.addStep(line);
+        try {
+            Map<Path, TaskDetails> tasks = new LinkedHashMap<>();
+            List<TaskDetails> parsed = files.parallelStream().map(file -> {
+                try {
+                    return taskCache.get(file, content -> parse(file, content));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            }).toList();
+            for (int i = 0; i < files.size(); i++) {
+                tasks.put(files.get(i), parsed.get(i));
             }
+            return tasks;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            taskCache.flush();
         }
+    }
 
-        // Use filename as task name if not specified
-        if (task.getName() == null) {
-            String fileName = filePath.getFileName().toString();
-            if (fileName.endsWith(".task")) {
-                fileName = fileName.substring(0, fileName.length() - 5);
-            } else if (fileName.endsWith(".gpt")) {
-                fileName = fileName.substring(0, fileName.length() - 4);
-            }
-            task.setName(fileName.replace("-", " "));
+    /**
+     * Stream the tasks of a bundle file holding any number of tasks, one at a time and
+     * without loading the whole file
+     *
+     * @param filePath the bundle file
+     * @param consumer called with each task, in file order
+     * @throws TaskParseException at the first malformed task, the tasks before it were consumed
+     * @throws IOException if an error occurs reading the file
+     */
+    public void parseBundle(Path filePath, Consumer<TaskDetails> consumer) throws IOException {
+        try (InputStream input = Files.newInputStream(filePath)) {
+            read(filePath, input, consumer);
         }
+    }
 
-        return task;
+    /**
+     * Forget the cached result of a file, so it is parsed again on next access
+     */
+    public void invalidate(Path filePath) {
+        taskCache.invalidate(filePath);
+        taskCache.flush();
     }
 
     /**
-     * Check if a file is a valid test or task file
-     * 
+     * Find the file of a task in the tasks directory
+     *
+     * @param taskName the task file name, without extension
+     * @return the task file, or null if there is none
+     */
+    public Path findTaskFile(String taskName) {
+        for (String extension : TASK_FILE_EXTENSIONS) {
+            Path path = Path.of(PROJECT_DIR, TASKS_DIR, taskName + extension);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if a file is a valid task file
+     *
      * @param filePath the path to the file
-     * @return true if the file has a valid extension (.test or .gpt)
+     * @return true if the file has one of the task file extensions
      */
     public boolean isValidTaskFile(Path filePath) {
-        String fileName = filePath.getFileName().toString();
-        return fileName.endsWith(".test") || fileName.endsWith(".gpt");
+        return extensionOf(filePath) != null;
     }
 
     /**
-     * Extract a quoted value from a line like 'key: "value"'
+     * Get the file name of a task file without its extension, as used to refer to the task
      */
-    private String extractQuotedValue(String line) {
-        int startIndex = line.indexOf("\"");
-        int endIndex = line.lastIndexOf("\"");
+    public static String baseName(Path filePath) {
+        String fileName = filePath.getFileName().toString();
+        String extension = extensionOf(filePath);
+        return extension != null ? fileName.substring(0, fileName.length() - extension.length()) : fileName;
+    }
 
-        if (startIndex >= 0 && endIndex > startIndex) {
-            return line.substring(startIndex + 1, endIndex);
+    private static String extensionOf(Path filePath) {
+        String fileName = filePath.getFileName().toString();
+        return TASK_FILE_EXTENSIONS.stream().filter(fileName::endsWith).findFirst().orElse(null);
+    }
+
+    private TaskDetails parse(Path filePath, byte[] content) throws IOException {
+        logger.info("Parsing task file: {}", filePath);
+
+        List<TaskDetails> tasks = new ArrayList<>();
+        read(filePath, new ByteArrayInputStream(content), tasks::add);
+        if (tasks.isEmpty()) {
+            throw new TaskParseException(filePath.getFileName().toString(), 1, 1, "No task found");
         }
+        if (tasks.size() > 1) {
+            throw new TaskParseException(filePath.getFileName().toString(), 1, 1, "File holds " + tasks.size() + " tasks, run it as a bundle");
+        }
+        return tasks.get(0);
+    }
 
-        // If no quotes, take everything after the colon
-        int colonIndex = line.indexOf(":");
-        if (colonIndex >= 0) {
-            return line.substring(colonIndex + 1).trim();
+    private void read(Path filePath, InputStream input, Consumer<TaskDetails> consumer) throws IOException {
+        String source = filePath.getFileName().toString();
+        // Use filename as task name if not specified
+        String defaultName = baseName(filePath).replace("-", " ");
+        String extension = extensionOf(filePath);
+        if (".json".equals(extension) || ".yaml".equals(extension) || ".yml".equals(extension)) {
+            readStructured(".json".equals(extension) ? jsonMapper : yamlMapper, source, defaultName, input, consumer);
+            return;
         }
 
-        return "";
+        TaskReader reader = new TaskReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), source, defaultName);
+        TaskDetails task;
+        while ((task = reader.next()) != null) {
+            consumer.accept(task);
+        }
+    }
+
+    private void readStructured(ObjectMapper mapper, String source, String defaultName, InputStream input,
+                                Consumer<TaskDetails> consumer) throws IOException {
+        // A root array is read as a sequence of tasks, like a multi-document YAML file
+        try (MappingIterator<TaskSpec> specs = mapper.readerFor(TaskSpec.class).readValues(input)) {
+            JsonParser parser = specs.getParser();
+            int count = 0;
+            while (true) {
+                JsonLocation start = parser.currentLocation();
+                if (!specs.hasNextValue()) {
+                    break;
+                }
+                TaskSpec spec = specs.nextValue();
+                count++;
+                consumer.accept(toTask(spec, count == 1 ? defaultName : null, source, start));
+            }
+        } catch (JsonProcessingException e) {
+            JsonLocation location = e.getLocation();
+            throw new TaskParseException(source,
+                    location != null ? location.getLineNr() : 1,
+                    location != null ? location.getColumnNr() : 1,
+                    e.getOriginalMessage(), e);
+        }
+    }
+
+    private TaskDetails toTask(TaskSpec spec, String defaultName, String source, JsonLocation start) throws TaskParseException {
+        int line = Math.max(1, start.getLineNr());
+        int column = Math.max(1, start.getColumnNr());
+        if (spec.steps == null || spec.steps.isEmpty()) {
+            throw new TaskParseException(source, line, column, "Task has no steps");
+        }
+
+        TaskDetails task = new TaskDetails(spec.name != null ? spec.name : defaultName, spec.description);
+        if (task.getName() == null) {
+            throw new TaskParseException(source, line, column, "Every task of a bundle but the first needs a name");
+        }
+        if (spec.tags != null) {
+            task.setTags(spec.tags);
+        }
+        task.setAuthor(spec.author);
+        task.setRequires(spec.requires);
+        task.setDependsOn(spec.dependsOn);
+        task.setTools(spec.tools);
+        task.getMetadata().putAll(spec.metadata);
+        if (spec.created != null) {
+            try {
+                task.setCreated(LocalDate.parse(spec.created, DATE_FORMATTER).atStartOfDay());
+            } catch (DateTimeParseException e) {
+                throw new TaskParseException(source, line, column, "Invalid date " + spec.created + ", expected yyyy-MM-dd");
+            }
+        }
+        for (TaskSpec.Step step : spec.steps) {
+            Map<String, String> options = new LinkedHashMap<>();
+            step.options.forEach((key, value) -> options.put(key.toLowerCase(), value));
+            task.addStep(step.step, options);
+        }
+        return task;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,246 @@
+package sh.gepetto.app.service;
+
+import sh.gepetto.app.model.TaskDetails;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass reader of the text task format. Tasks are read one at a time, so a
+ * bundle file holding many tasks is never loaded at once.
+ *
+ * <pre>
+ * # Comments and blank lines are ignored
+ * name: "login"                      optional, defaults to the file name
+ * description: "Log in and out"
+ * tags: [smoketest, qa]
+ * author: "Laurent"
+ * created: "2025-03-15"
+ * requires: "login-as-admin"
+ * depends_on: [signup]
+ * tools: [browser_navigate, browser_click]   only offer these tools to the model
+ * metadata:                          a block of indented key: value pairs
+ *   owner: "qa-team"
+ * Task:
+ *   Navigate to ${HOSTNAME}.
+ *   [model: gpt-4o; tools: [browser_snapshot]] A step with options,
+ *     continued on a more indented line.
+ * ---                                starts the next task of a bundle
+ * </pre>
+ *
+ * Metadata is only read before the {@code Task:} line, other keys than the ones above
+ * are kept as free-form metadata. Every task of a bundle but the first needs a name.
+ */
+final class TaskReader {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final BufferedReader reader;
+    private final String source;
+    private final String defaultName;
+    private int lineNumber;
+    private int taskCount;
+
+    /**
+     * @param reader      the task content
+     * @param source      the file name, used in error messages
+     * @param defaultName the name of the first task if it doesn't declare one
+     */
+    TaskReader(BufferedReader reader, String source, String defaultName) {
+        this.reader = reader;
+        this.source = source;
+        this.defaultName = defaultName;
+    }
+
+    /**
+     * Read the next task
+     *
+     * @return the task, or null at the end of the content
+     * @throws TaskParseException if the task is malformed
+     */
+    TaskDetails next() throws IOException {
+        TaskDetails task = null;
+        int taskLine = 0;
+        boolean inSteps = false;
+        boolean inMetadata = false;
+        int stepIndent = -1;
+        StringBuilder step = null;
+        Map<String, String> stepOptions = null;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.equals("---")) {
+                if (task != null) {
+                    break;
+                }
+                continue;
+            }
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            int indent = line.indexOf(trimmed);
+            if (task == null) {
+                task = new TaskDetails();
+                taskLine = lineNumber;
+            }
+
+            if (inSteps) {
+                // A line indented deeper than the steps continues the previous step
+                if (stepIndent < 0) {
+                    stepIndent = indent;
+                }
+                if (indent > stepIndent && step != null) {
+                    step.append(' ').append(trimmed);
+                    continue;
+                }
+                if (step != null) {
+                    task.addStep(step.toString(), stepOptions);
+                }
+                int optionsEnd = stepOptionsEnd(trimmed, indent);
+                stepOptions = readStepOptions(trimmed, optionsEnd, indent);
+                step = new StringBuilder(optionsEnd < 0 ? trimmed : trimmed.substring(optionsEnd + 1).trim());
+                continue;
+            }
+
+            if (trimmed.equals("Task:") || trimmed.equals("Test:")) {
+                inSteps = true;
+                continue;
+            }
+
+            int colon = trimmed.indexOf(':');
+            if (colon <= 0) {
+                throw error(indent + 1, "Expected 'key: value' or 'Task:'");
+            }
+            String key = trimmed.substring(0, colon).trim();
+            String value = trimmed.substring(colon + 1).trim();
+            int valueColumn = value.isEmpty() ? indent + colon + 2 : line.indexOf(value, indent + colon + 1) + 1;
+
+            if (inMetadata && indent > 0) {
+                task.getMetadata().put(key, unquote(value));
+                continue;
+            }
+            inMetadata = false;
+            if (indent > 0) {
+                throw error(indent + 1, "Unexpected indentation, free-form entries belong in a 'metadata:' block");
+            }
+
+            switch (key) {
+                case "name" -> task.setName(unquote(value));
+                case "description" -> task.setDescription(unquote(value));
+                case "tags" -> task.setTags(list(value));
+                case "author" -> task.setAuthor(unquote(value));
+                case "requires" -> task.setRequires(unquote(value));
+                case "depends_on" -> task.setDependsOn(list(value));
+                case "tools" -> task.setTools(list(value));
+                case "created" -> {
+                    try {
+                        task.setCreated(LocalDate.parse(unquote(value), DATE_FORMATTER).atStartOfDay());
+                    } catch (DateTimeParseException e) {
+                        throw error(valueColumn, "Invalid date " + value + ", expected yyyy-MM-dd");
+                    }
+                }
+                case "metadata" -> {
+                    if (!value.isEmpty()) {
+                        throw error(valueColumn, "Expected the metadata entries on the following, indented lines");
+                    }
+                    inMetadata = true;
+                }
+                default -> task.getMetadata().put(key, unquote(value));
+            }
+        }
+
+        if (task == null) {
+            return null;
+        }
+        if (step != null) {
+            task.addStep(step.toString(), stepOptions);
+        }
+        if (!inSteps || task.getSteps().isEmpty()) {
+            throw new TaskParseException(source, taskLine, 1, "Task has no steps, expected a 'Task:' line followed by one step per line");
+        }
+
+        taskCount++;
+        if (task.getName() == null) {
+            if (taskCount > 1) {
+                throw new TaskParseException(source, taskLine, 1, "Every task of a bundle but the first needs a name");
+            }
+            task.setName(defaultName);
+        }
+        return task;
+    }
+
+    /**
+     * Find the bracket closing the options of a step, option values may be bracketed lists
+     *
+     * @return the index of the closing bracket, -1 if the step has no options
+     */
+    private int stepOptionsEnd(String step, int indent) throws TaskParseException {
+        if (!step.startsWith("[")) {
+            return -1;
+        }
+        int depth = 0;
+        for (int i = 0; i < step.length(); i++) {
+            char c = step.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        throw error(indent + 1, "Unclosed '[' in step options");
+    }
+
+    /**
+     * Read per-step options from a step like '[model: gpt-4o; tools: [a, b]] Click the button'
+     *
+     * @param end the index of the bracket closing the options, see {@link #stepOptionsEnd}
+     * @return the options in declaration order, keys lower-cased, empty if the step has none
+     */
+    private Map<String, String> readStepOptions(String step, int end, int indent) throws TaskParseException {
+        Map<String, String> options = new LinkedHashMap<>();
+        if (end < 0) {
+            return options;
+        }
+
+        int offset = 1;
+        for (String option : step.substring(1, end).split(";", -1)) {
+            int colon = option.indexOf(':');
+            if (colon <= 0) {
+                throw error(indent + offset + 1, "Expected 'key: value' in step options");
+            }
+            options.put(option.substring(0, colon).trim().toLowerCase(), option.substring(colon + 1).trim());
+            offset += option.length() + 1;
+        }
+        return options;
+    }
+
+    private TaskParseException error(int column, String message) {
+        return new TaskParseException(source, lineNumber, column, message);
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static List<String> list(String value) {
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return Arrays.stream(value.split(","))
+                .map(entry -> unquote(entry.trim()))
+                .filter(entry -> !entry.isEmpty())
+                .toList();
+    }
+}
@@ -0,0 +1,72 @@
+package sh.gepetto.app.service;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A task in the YAML or JSON format, one document (or array element) per task:
+ *
+ * <pre>
+ * name: login
+ * description: Log in and out
+ * tags: [smoketest, qa]
+ * depends_on: [signup]
+ * tools: [browser_navigate, browser_click]
+ * metadata:
+ *   owner: qa-team
+ * steps:
+ *   - Navigate to ${HOSTNAME}.
+ *   - step: Verify the dashboard is displayed.
+ *     options:
+ *       model: gpt-4o
+ * </pre>
+ *
+ * Other top-level keys are kept as free-form metadata.
+ */
+public class TaskSpec {
+    public String name;
+    public String description;
+    public List<String> tags;
+    public String author;
+    public String created;
+    public String requires;
+    @JsonProperty("depends_on")
+    public List<String> dependsOn;
+    public List<String> tools;
+    public Map<String, String> metadata = new LinkedHashMap<>();
+    public List<Step> steps = new ArrayList<>();
+
+    // Merged with the other keys, which may come before the metadata block
+    @JsonProperty("metadata")
+    public void setMetadata(Map<String, String> entries) {
+        metadata.putAll(entries);
+    }
+
+    @JsonAnySetter
+    public void otherMetadata(String key, String value) {
+        metadata.put(key, value);
+    }
+
+    public static class Step {
+        final String step;
+        final Map<String, String> options;
+
+        @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+        Step(@JsonProperty(value = "step", required = true) String step,
+             @JsonProperty("options") Map<String, String> options) {
+            this.step = step;
+            this.options = options != null ? options : Map.of();
+        }
+
+        @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+        static Step of(String step) {
+            return new Step(step, Map.of());
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package sh.gepetto.app.tools;
+
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.client.transport.ServerParameters;
+import io.modelcontextprotocol.client.transport.StdioClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
+import org.springframework.ai.mcp.client.autoconfigure.properties.McpClientCommonProperties;
+import org.springframework.ai.mcp.client.autoconfigure.properties.McpStdioClientProperties;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sh.gepetto.app.utils.SanitizingToolCallback;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pool of pre-launched browser MCP servers, one per concurrent task run.
+ * <p>
+ * Servers are started from the stdio MCP configuration in isolated mode, optionally
+ * restoring a storage state (e.g. an authenticated session). A leased session gets a
+ * fresh browser context and is reset when released, so its browser process can be
+ * reused by the next run instead of launching a new one. At most pool-size browsers
+ * run at once, a lease waits for one to be released beyond that.
+ */
+@Slf4j
+@Component
+public class BrowserPool {
+
+    private final McpStdioClientProperties stdioProperties;
+    private final McpClientCommonProperties commonProperties;
+    private final int poolSize;
+    private final String serverName;
+    private final String storageState;
+
+    // Idle sessions, by the storage state they were launched with ("" for none), guarded by this
+    private final Map<String, Queue<BrowserSession>> idleSessions = new HashMap<>();
+    // Browsers launched or launching, idle or leased, guarded by this
+    private int liveSessions;
+    private final List<BrowserSession> sessions = new ArrayList<>();
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+
+    public BrowserPool(McpStdioClientProperties stdioProperties,
+                       McpClientCommonProperties commonProperties,
+                       @Value("${gepetto.browser.pool-size:0}") int poolSize,
+                       @Value("${gepetto.browser.server:playwright}") String serverName,
+                       @Value("${gepetto.browser.storage-state:#{null}}") String storageState) {
+        this.stdioProperties = stdioProperties;
+        this.commonProperties = commonProperties;
+        this.poolSize = poolSize;
+        this.serverName = serverName;
+        this.storageState = storageState;
+    }
+
+    /**
+     * The pool is only used when a pool size is configured, otherwise runs share the
+     * browser of the default MCP client.
+     */
+    public boolean isEnabled() {
+        return poolSize > 0;
+    }
+
+    /**
+     * Lease a browser session for a task run
+     *
+     * @param storageState the storage state to restore, or null for an empty context
+     * @return an idle session launched with this storage state, or a newly launched one
+     */
+    public BrowserSession lease(String storageState) {
+        // Pre-launch the rest of the pool in the background on first use
+        if (warmedUp.compareAndSet(false, true)) {
+            for (int i = 1; i < poolSize; i++) {
+                Thread.ofVirtual().start(this::prelaunch);
+            }
+        }
+
+        String key = key(storageState);
+        BrowserSession evicted = null;
+        synchronized (this) {
+            while (true) {
+                BrowserSession session = idle(key).poll();
+                if (session != null) {
+                    return session;
+                }
+                if (liveSessions < poolSize) {
+                    liveSessions++;
+                    break;
+                }
+                // Hand the slot of a browser launched with another storage state over
+                evicted = pollIdleExcept(key);
+                if (evicted != null) {
+                    break;
+                }
+                awaitRelease();
+            }
+        }
+        if (evicted != null) {
+            close(evicted);
+        }
+        return launchReserved(storageState, null);
+    }
+
+    /**
+     * Launch a dedicated session on a persistent profile directory, e.g. to capture or
+     * restore the state left by a fixture. It is closed rather than pooled on release,
+     * so the profile is flushed to disk.
+     *
+     * @param userDataDir the profile directory to use
+     */
+    public BrowserSession lease(Path userDataDir) {
+        BrowserSession evicted = null;
+        synchronized (this) {
+            while (liveSessions >= poolSize) {
+                evicted = pollIdleExcept(null);
+                if (evicted != null) {
+                    break;
+                }
+                awaitRelease();
+            }
+            if (evicted == null) {
+                liveSessions++;
+            }
+        }
+        if (evicted != null) {
+            close(evicted);
+        }
+        return launchReserved(null, userDataDir);
+    }
+
+    /**
+     * Return a session to the pool once its task run is done
+     */
+    public void release(BrowserSession session) {
+        if (session.getUserDataDir() != null) {
+            close(session);
+            free();
+            return;
+        }
+
+        session.reset();
+        offer(session);
+    }
+
+    /**
+     * Launch a browser with the configured storage state and keep it idle, ready to be
+     * leased as is
+     */
+    private void prelaunch() {
+        synchronized (this) {
+            if (liveSessions >= poolSize) {
+                return;
+            }
+            liveSessions++;
+        }
+        try {
+            offer(launch(storageState, null));
+        } catch (RuntimeException e) {
+            log.warn("Failed to pre-launch a browser session: {}", e.getMessage());
+            free();
+        }
+    }
+
+    private BrowserSession pollIdleExcept(String key) {
+        for (Map.Entry<String, Queue<BrowserSession>> idle : idleSessions.entrySet()) {
+            if (!idle.getKey().equals(key) && !idle.getValue().isEmpty()) {
+                return idle.getValue().poll();
+            }
+        }
+        return null;
+    }
+
+    private void awaitRelease() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a browser session", e);
+        }
+    }
+
+    private BrowserSession launchReserved(String storageState, Path userDataDir) {
+        try {
+            return launch(storageState, userDataDir);
+        } catch (RuntimeException e) {
+            free();
+            throw e;
+        }
+    }
+
+    private synchronized void offer(BrowserSession session) {
+        idle(key(session.getStorageState())).offer(session);
+        notifyAll();
+    }
+
+    private synchronized void free() {
+        liveSessions--;
+        notifyAll();
+    }
+
+    private Queue<BrowserSession> idle(String key) {
+        return idleSessions.computeIfAbsent(key, k -> new ArrayDeque<>());
+    }
+
+    private static String key(String storageState) {
+        return storageState != null ? storageState : "";
+    }
+
+    private BrowserSession launch(String storageState, Path userDataDir) {
+        ServerParameters configured = stdioProperties.toServerParameters().get(serverName);
+        if (configured == null) {
+            throw new IllegalStateException("MCP server '" + serverName + "' is not configured");
+        }
+
+        List<String> args = new ArrayList<>(configured.getArgs());
+        args.remove("--isolated");
+        ServerParameters.Builder parameters = ServerParameters.builder(configured.getCommand())
+                .args(args)
+                .env(configured.getEnv());
+        if (userDataDir != null) {
+            parameters.arg("--user-data-dir").arg(userDataDir.toAbsolutePath().toString());
+        } else {
+            parameters.arg("--isolated");
+        }
+        if (storageState != null) {
+            parameters.arg("--storage-state").arg(storageState);
+        }
+
+        log.info("Launching browser session for '{}' (storage state: {}, profile: {})", serverName, storageState, userDataDir);
+        // Same client name as the auto-configured clients, so tool names stay identical
+        McpSyncClient client = McpClient.sync(new StdioClientTransport(parameters.build()))
+                .clientInfo(new McpSchema.Implementation(commonProperties.getName() + " - " + serverName, commonProperties.getVersion()))
+                .requestTimeout(commonProperties.getRequestTimeout())
+                .build();
+        client.initialize();
+
+        List<ToolCallback> toolCallbacks = Arrays.stream(new SyncMcpToolCallbackProvider(client).getToolCallbacks())
+                .map(SanitizingToolCallback::new)
+                .map(ToolCallback.class::cast)
+                .toList();
+        BrowserSession session = new BrowserSession(client, toolCallbacks, storageState, userDataDir);
+        session.warmUp();
+
+        synchronized (sessions) {
+            sessions.add(session);
+        }
+        return session;
+    }
+
+    private void close(BrowserSession session) {
+        synchronized (sessions) {
+            sessions.remove(session);
+        }
+        session.close();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (sessions) {
+            sessions.forEach(BrowserSession::close);
+            sessions.clear();
+        }
+        synchronized (this) {
+            idleSessions.clear();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package sh.gepetto.app.tools;
+
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A browser MCP server leased from the {@link BrowserPool} to a single task run.
+ * Pooled servers run in isolated mode, so the browser context only lives in memory and
+ * is discarded when the session is reset. Dedicated servers use a persistent profile
+ * directory instead, which outlives the session.
+ */
+@Slf4j
+public class BrowserSession implements AutoCloseable {
+
+    private final McpSyncClient client;
+    private final List<ToolCallback> toolCallbacks;
+    private final String storageState;
+    private final Path userDataDir;
+
+    BrowserSession(McpSyncClient client, List<ToolCallback> toolCallbacks, String storageState, Path userDataDir) {
+        this.client = client;
+        this.toolCallbacks = toolCallbacks;
+        this.storageState = storageState;
+        this.userDataDir = userDataDir;
+    }
+
+    public List<ToolCallback> getToolCallbacks() {
+        return toolCallbacks;
+    }
+
+    /**
+     * The storage state file the browser context is restored from, or null for an empty one
+     */
+    public String getStorageState() {
+        return storageState;
+    }
+
+    /**
+     * The persistent profile directory of a dedicated session, or null for a pooled isolated one
+     */
+    public Path getUserDataDir() {
+        return userDataDir;
+    }
+
+    /**
+     * Launch the browser ahead of the first step by opening a blank page
+     */
+    void warmUp() {
+        callTool("browser_navigate", Map.of("url", "about:blank"));
+    }
+
+    /**
+     * Close the browser context so the next task run starts from a fresh one
+     */
+    void reset() {
+        callTool("browser_close", Map.of());
+    }
+
+    private void callTool(String name, Map<String, Object> arguments) {
+        try {
+            client.callTool(new McpSchema.CallToolRequest(name, arguments));
+        } catch (RuntimeException e) {
+            log.debug("Browser tool {} failed: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        client.closeGracefully();
+    }
+}
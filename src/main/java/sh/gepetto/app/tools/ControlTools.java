@@ -16,6 +16,9 @@ public class ControlTools {
     public record CompleteActionResult(String message, TaskResult.Status status) {
     }
 
+    public record CompleteStepsResult(List<CompleteActionResult> results) {
+    }
+
     @Tool(description = "Complete the test with either success, failure or error and a message describing what happened", returnDirect = true, name = "complete_test")
     public CompleteActionResult completeAction(
             @ToolParam(description = "A descriptive message for the test result.") String message,
@@ -24,4 +27,12 @@ public class ControlTools {
         log.debug("Complete action for task: {}", toolContext.getContext().get("taskId"));
         return new CompleteActionResult(message, status);
     }
+
+    @Tool(description = "Complete a batch of steps, reporting one result per step in the order the steps were given", returnDirect = true, name = "complete_steps")
+    public CompleteStepsResult completeSteps(
+            @ToolParam(description = "The result of each step, in order.") List<CompleteActionResult> results, ToolContext toolContext)
+    {
+        log.debug("Complete steps for task: {}", toolContext.getContext().get("taskId"));
+        return new CompleteStepsResult(results);
+    }
 }
@@ -0,0 +1,68 @@
+package sh.gepetto.app.utils;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import sh.gepetto.app.events.Event;
+import sh.gepetto.app.events.EventBus;
+
+/**
+ * Wraps a ToolCallback of a task run and publishes a tool call event for every call, along
+ * with spans of the call and of the repair of its arguments.
+ */
+public final class ObservedToolCallback implements ToolCallback {
+    private final ToolCallback delegate;
+    private final EventBus eventBus;
+    private final String runId;
+    private final String task;
+    private final boolean replayed;
+
+    public ObservedToolCallback(ToolCallback delegate, EventBus eventBus, String runId, String task, boolean replayed) {
+        this.delegate = delegate;
+        this.eventBus = eventBus;
+        this.runId = runId;
+        this.task = task;
+        this.replayed = replayed;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String tool = delegate.getToolDefinition().name();
+        long start = System.currentTimeMillis();
+        boolean failed = true;
+        try (EventBus.OpenSpan span = eventBus.span(runId, task, "tool", tool).arg("replayed", replayed)) {
+            // Repair the arguments here rather than in the sanitizing callback, to time the repair on its own
+            ToolCallback target = delegate;
+            String arguments = toolInput;
+            if (delegate instanceof SanitizingToolCallback sanitizing) {
+                try (EventBus.OpenSpan repair = eventBus.span(runId, task, "tool", "repair arguments")) {
+                    arguments = SanitizingToolCallback.repairJson(toolInput);
+                    repair.arg("repaired", !arguments.equals(toolInput));
+                }
+                target = sanitizing.getDelegate();
+            }
+            String result = toolContext != null ? target.call(arguments, toolContext) : target.call(arguments);
+            failed = false;
+            return result;
+        } finally {
+            eventBus.publish(new Event.ToolCall(runId, task, tool, toolInput, replayed,
+                    failed, System.currentTimeMillis() - start));
+        }
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+}
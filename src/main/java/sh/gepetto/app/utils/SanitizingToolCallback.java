@@ -9,10 +9,13 @@ import org.springframework.ai.tool.metadata.ToolMetadata;
 /** Wraps a ToolCallback and repairs malformed JSON arguments (e.g., missing '}'). */
 public final class SanitizingToolCallback implements ToolCallback {
     private final ToolCallback delegate;
+    // MCP callbacks serialize their input schema on every call, the tools of a server don't change
+    private final ToolDefinition toolDefinition;
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     public SanitizingToolCallback(ToolCallback delegate) {
         this.delegate = delegate;
+        this.toolDefinition = delegate.getToolDefinition();
     }
 
     @Override
@@ -25,9 +28,14 @@ public final class SanitizingToolCallback implements ToolCallback {
         return delegate.call(repairJson(toolInput), toolContext);
     }
 
+    /** The wrapped callback, for callers repairing the arguments themselves. */
+    public ToolCallback getDelegate() {
+        return delegate;
+    }
+
     @Override
     public ToolDefinition getToolDefinition() {
-        return delegate.getToolDefinition();
+        return toolDefinition;
     }
 
     @Override
@@ -36,7 +44,7 @@ public final class SanitizingToolCallback implements ToolCallback {
     }
 
     /** Minimal, fast repair for the common case: missing closing '}' or extra tail after '}'. */
-    static String repairJson(String s) {
+    public static String repairJson(String s) {
         if (s == null || s.isBlank()) return "{}";
         // Try as-is
         if (isValidJsonObject(s)) return s;
@@ -68,6 +76,11 @@ public final class SanitizingToolCallback implements ToolCallback {
         return "{}";
     }
 
+    /** True when the arguments are not a valid JSON object and would need {@link #repairJson(String)}. */
+    public static boolean needsRepair(String s) {
+        return s == null || s.isBlank() || !isValidJsonObject(s);
+    }
+
     private static boolean isValidJsonObject(String s) {
         try {
             return MAPPER.readTree(s).isObject();
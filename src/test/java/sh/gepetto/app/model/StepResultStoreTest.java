@@ -0,0 +1,96 @@
+package sh.gepetto.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class StepResultStoreTest {
+
+    @Test
+    void readsBackSpilledResults() {
+        StepResultStore store = store(3, 80);
+
+        assertThat(store).hasSize(80);
+        assertThat(store.get(0).getStep()).isEqualTo("Step 0");
+        assertThat(store.get(40).getStep()).isEqualTo("Step 40");
+        assertThat(store.get(79).getStep()).isEqualTo("Step 79");
+        assertThat(store).extracting(StepResult::getStep).containsExactlyElementsOf(steps(80));
+        store.close();
+    }
+
+    @Test
+    void keepsNoFileOpenBetweenIterations() throws IOException {
+        assumeTrue(Files.isDirectory(Path.of("/proc/self/fd")));
+        StepResultStore store = store(3, 80);
+
+        Iterator<StepResult> iterator = store.iterator();
+        assertThat(iterator.next().getStep()).isEqualTo("Step 0");
+        assertThat(openSpillFiles()).isZero();
+
+        // Abandoned midway, then released
+        store.close();
+        assertThat(openSpillFiles()).isZero();
+        assertThatThrownBy(() -> iterator.forEachRemaining(stepResult -> {})).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(store::iterator).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void keepsTheRecentResultsReadableOnceClosed() {
+        StepResultStore store = store(3, 10);
+        store.close();
+
+        assertThat(store.get(9).getStep()).isEqualTo("Step 9");
+        assertThatThrownBy(() -> store.get(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void iteratesTheResultsPresentWhenStarted() {
+        StepResultStore store = store(3, 10);
+
+        Iterator<StepResult> iterator = store.iterator();
+        store.add(StepResult.builder().step("Step 10").build());
+        List<String> steps = new ArrayList<>();
+        iterator.forEachRemaining(stepResult -> steps.add(stepResult.getStep()));
+        assertThat(steps).containsExactlyElementsOf(steps(10));
+        store.close();
+    }
+
+    private static StepResultStore store(int window, int count) {
+        StepResultStore store = new StepResultStore(window);
+        for (String step : steps(count)) {
+            store.add(StepResult.builder().step(step).status(TaskResult.Status.SUCCESS).build());
+        }
+        return store;
+    }
+
+    private static List<String> steps(int count) {
+        List<String> steps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            steps.add("Step " + i);
+        }
+        return steps;
+    }
+
+    private static long openSpillFiles() throws IOException {
+        try (Stream<Path> fds = Files.list(Path.of("/proc/self/fd"))) {
+            return fds.filter(fd -> {
+                try {
+                    return Files.readSymbolicLink(fd).toString().contains("gepetto-steps-");
+                } catch (IOException e) {
+                    // Closed while listing
+                    return false;
+                }
+            }).count();
+        }
+    }
+}
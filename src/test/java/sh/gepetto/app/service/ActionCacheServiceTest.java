@@ -0,0 +1,119 @@
+package sh.gepetto.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActionCacheServiceTest {
+
+    private static final List<AssistantMessage.ToolCall> CLICK =
+            List.of(new AssistantMessage.ToolCall("1", "function", "browser_click", "{\"ref\":\"e12\"}"));
+    private static final List<AssistantMessage.ToolCall> TYPE =
+            List.of(new AssistantMessage.ToolCall("2", "function", "browser_type", "{\"text\":\"hello\"}"));
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void readsBackEntriesFromTheLog() throws IOException {
+        ActionCacheService cache = new ActionCacheService(cacheDir);
+        cache.put("login", "a", CLICK);
+        cache.put("login", "b", TYPE);
+        cache.put("other task", "a", TYPE);
+
+        ActionCacheService reopened = new ActionCacheService(cacheDir);
+        assertThat(reopened.get("login", "a")).isEqualTo(CLICK);
+        assertThat(reopened.get("login", "b")).isEqualTo(TYPE);
+        assertThat(reopened.get("other task", "a")).isEqualTo(TYPE);
+        assertThat(reopened.get("login", "c")).isNull();
+        assertThat(lines("login")).hasSize(2);
+        assertThat(cacheDir.resolve("other_task.jsonl")).exists();
+    }
+
+    @Test
+    void appendsDroppedEntries() throws IOException {
+        ActionCacheService cache = new ActionCacheService(cacheDir);
+        cache.put("login", "a", CLICK);
+        cache.invalidate("login", "a");
+        cache.invalidate("login", "missing");
+
+        assertThat(cache.get("login", "a")).isNull();
+        assertThat(lines("login")).hasSize(2);
+        assertThat(new ActionCacheService(cacheDir).get("login", "a")).isNull();
+    }
+
+    @Test
+    void compactsALogOfMostlySupersededLines() throws IOException {
+        ActionCacheService cache = new ActionCacheService(cacheDir);
+        cache.put("login", "kept", TYPE);
+        for (int i = 0; i < 20; i++) {
+            cache.put("login", "a", i % 2 == 0 ? CLICK : TYPE);
+            cache.invalidate("login", "a");
+        }
+        cache.put("login", "a", CLICK);
+        assertThat(lines("login")).hasSize(42);
+
+        ActionCacheService reopened = new ActionCacheService(cacheDir);
+        assertThat(reopened.get("login", "a")).isEqualTo(CLICK);
+        assertThat(reopened.get("login", "kept")).isEqualTo(TYPE);
+        assertThat(lines("login")).hasSize(2);
+        assertThat(new ActionCacheService(cacheDir).get("login", "a")).isEqualTo(CLICK);
+    }
+
+    @Test
+    void keepsALogWithFewSupersededLines() throws IOException {
+        ActionCacheService cache = new ActionCacheService(cacheDir);
+        for (int i = 0; i < 5; i++) {
+            cache.put("login", "a", CLICK);
+        }
+
+        assertThat(new ActionCacheService(cacheDir).get("login", "a")).isEqualTo(CLICK);
+        assertThat(lines("login")).hasSize(5);
+    }
+
+    @Test
+    void skipsAnUnreadableLine() throws IOException {
+        new ActionCacheService(cacheDir).put("login", "a", CLICK);
+        Files.writeString(cacheDir.resolve("login.jsonl"), "{\"key\":\"b\",\"toolCa", StandardOpenOption.APPEND);
+
+        ActionCacheService reopened = new ActionCacheService(cacheDir);
+        assertThat(reopened.get("login", "a")).isEqualTo(CLICK);
+        assertThat(reopened.get("login", "b")).isNull();
+    }
+
+    @Test
+    void migratesALegacyCacheFile() throws IOException {
+        Files.writeString(cacheDir.resolve("login.json"),
+                "{\"a\":[{\"id\":\"1\",\"type\":\"function\",\"name\":\"browser_click\",\"arguments\":\"{\\\"ref\\\":\\\"e12\\\"}\"}]}");
+
+        ActionCacheService cache = new ActionCacheService(cacheDir);
+        assertThat(cache.get("login", "a")).isEqualTo(CLICK);
+        assertThat(cacheDir.resolve("login.json")).doesNotExist();
+        assertThat(lines("login")).hasSize(1);
+        assertThat(new ActionCacheService(cacheDir).get("login", "a")).isEqualTo(CLICK);
+    }
+
+    @Test
+    void keysStepsOnThePreviousSteps() {
+        MessageDigest prefix = ActionCacheService.newPrefixDigest();
+        String first = ActionCacheService.key("Click the button", prefix);
+        assertThat(ActionCacheService.key("Click the button", prefix)).isEqualTo(first);
+
+        ActionCacheService.addToPrefix(prefix, "Open the page");
+        assertThat(ActionCacheService.key("Click the button", prefix)).isNotEqualTo(first);
+    }
+
+    private List<String> lines(String taskName) throws IOException {
+        return Files.readAllLines(cacheDir.resolve(taskName + ".jsonl"), StandardCharsets.UTF_8);
+    }
+}
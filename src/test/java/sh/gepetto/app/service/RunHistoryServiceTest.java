@@ -0,0 +1,152 @@
+package sh.gepetto.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.gepetto.app.model.RunRecord;
+import sh.gepetto.app.model.StepResult;
+import sh.gepetto.app.model.TaskDetails;
+import sh.gepetto.app.model.TaskResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static sh.gepetto.app.config.Constants.*;
+
+class RunHistoryServiceTest {
+
+    private static final LocalDateTime EXECUTION_TIME = LocalDateTime.of(2025, 3, 15, 10, 30, 0);
+
+    @TempDir
+    Path historyDir;
+
+    @Test
+    void readsBackTheRecordedRuns() throws IOException {
+        RunHistoryService history = new RunHistoryService(historyDir);
+        history.record(result("login", TaskResult.Status.SUCCESS, 1200, TaskResult.Status.SUCCESS, TaskResult.Status.SUCCESS));
+        history.record(result("checkout", TaskResult.Status.FAILED, 3400, TaskResult.Status.SUCCESS, TaskResult.Status.FAILED));
+
+        assertThat(history.query(null, null)).containsExactly(
+                record("login", TaskResult.Status.SUCCESS, 1200, 2, 2),
+                record("checkout", TaskResult.Status.FAILED, 3400, 2, 1));
+        assertThat(Files.size(historyDir.resolve(HISTORY_RUNS_FILE))).isEqualTo(2L * RunHistoryService.RECORD_SIZE);
+    }
+
+    @Test
+    void indexesTheRunsOfEachTask() throws IOException {
+        RunHistoryService history = new RunHistoryService(historyDir);
+        history.record(result("login", TaskResult.Status.SUCCESS, 100));
+        history.record(result("checkout", TaskResult.Status.SUCCESS, 200));
+        history.record(result("login", TaskResult.Status.FAILED, 300));
+
+        assertThat(Files.readAllLines(historyDir.resolve(HISTORY_TASKS_FILE))).containsExactly("login", "checkout");
+        assertThat(index(0)).containsExactly(0, 2);
+        assertThat(index(1)).containsExactly(1);
+
+        assertThat(history.query("login", null)).extracting(RunRecord::getExecutionDurationMs).containsExactly(100L, 300L);
+        assertThat(history.query("checkout", null)).extracting(RunRecord::getExecutionDurationMs).containsExactly(200L);
+        assertThat(history.query("unknown", null)).isEmpty();
+    }
+
+    @Test
+    void storesStatusesAsFixedCodes() throws IOException {
+        RunHistoryService history = new RunHistoryService(historyDir);
+        for (TaskResult.Status status : TaskResult.Status.values()) {
+            history.record(result("task", status, 0));
+        }
+        history.record(result("task", null, 0));
+
+        byte[] runs = Files.readAllBytes(historyDir.resolve(HISTORY_RUNS_FILE));
+        List<Byte> codes = new ArrayList<>();
+        for (int offset = 28; offset < runs.length; offset += RunHistoryService.RECORD_SIZE) {
+            codes.add(runs[offset]);
+        }
+        assertThat(codes).containsExactly((byte) 0, (byte) 1, (byte) 2, (byte) 3, (byte) 2);
+        assertThat(history.query("task", null)).extracting(RunRecord::getStatus).containsExactly(
+                TaskResult.Status.SUCCESS, TaskResult.Status.FAILED, TaskResult.Status.ERROR,
+                TaskResult.Status.SKIPPED, TaskResult.Status.ERROR);
+    }
+
+    @Test
+    void appendsToAnExistingHistory() throws IOException {
+        new RunHistoryService(historyDir).record(result("login", TaskResult.Status.SUCCESS, 100));
+        new RunHistoryService(historyDir).record(result("checkout", TaskResult.Status.SUCCESS, 200));
+
+        RunHistoryService reopened = new RunHistoryService(historyDir);
+        reopened.record(result("login", TaskResult.Status.FAILED, 300));
+
+        assertThat(reopened.query(null, null)).extracting(RunRecord::getTaskName).containsExactly("login", "checkout", "login");
+        assertThat(Files.readAllLines(historyDir.resolve(HISTORY_TASKS_FILE))).containsExactly("login", "checkout");
+        assertThat(index(0)).containsExactly(0, 2);
+    }
+
+    @Test
+    void indexesTheEarlierRunsOfAHistoryWithoutIndex() throws IOException {
+        RunHistoryService history = new RunHistoryService(historyDir);
+        history.record(result("login", TaskResult.Status.SUCCESS, 100));
+        history.record(result("checkout", TaskResult.Status.SUCCESS, 200));
+        history.record(result("login", TaskResult.Status.SUCCESS, 300));
+        Files.delete(historyDir.resolve(HISTORY_TASK_RUNS_FILE.formatted(0)));
+
+        // Scanned in full until the task runs again
+        assertThat(history.query("login", null)).extracting(RunRecord::getExecutionDurationMs).containsExactly(100L, 300L);
+
+        history.record(result("login", TaskResult.Status.SUCCESS, 400));
+        assertThat(index(0)).containsExactly(0, 2, 3);
+        assertThat(history.query("login", null)).extracting(RunRecord::getExecutionDurationMs).containsExactly(100L, 300L, 400L);
+    }
+
+    @Test
+    void filtersOnTheRecordingTime() throws IOException {
+        RunHistoryService history = new RunHistoryService(historyDir);
+        history.record(result("login", TaskResult.Status.SUCCESS, 100));
+
+        assertThat(history.query("login", LocalDateTime.now().minusMinutes(1))).hasSize(1);
+        assertThat(history.query("login", LocalDateTime.now().plusMinutes(1))).isEmpty();
+        assertThat(history.query(null, LocalDateTime.now().plusMinutes(1))).isEmpty();
+    }
+
+    @Test
+    void returnsNothingWithoutHistory() throws IOException {
+        assertThat(new RunHistoryService(historyDir.resolve("missing")).query(null, null)).isEmpty();
+    }
+
+    private List<Integer> index(int taskId) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(historyDir.resolve(HISTORY_TASK_RUNS_FILE.formatted(taskId))));
+        List<Integer> recordNumbers = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            recordNumbers.add(buffer.getInt());
+        }
+        return recordNumbers;
+    }
+
+    private static TaskResult result(String taskName, TaskResult.Status status, long durationMs, TaskResult.Status... stepStatuses) {
+        TaskResult result = TaskResult.builder()
+                .task(new TaskDetails(taskName, null))
+                .status(status)
+                .executionTime(EXECUTION_TIME)
+                .executionDurationMs(durationMs)
+                .stepResults(new ArrayList<>())
+                .build();
+        for (TaskResult.Status stepStatus : stepStatuses) {
+            result.getStepResults().add(StepResult.builder().status(stepStatus).build());
+        }
+        return result;
+    }
+
+    private static RunRecord record(String taskName, TaskResult.Status status, long durationMs, int steps, int passedSteps) {
+        return RunRecord.builder()
+                .taskName(taskName)
+                .executionTime(EXECUTION_TIME)
+                .executionDurationMs(durationMs)
+                .status(status)
+                .steps(steps)
+                .passedSteps(passedSteps)
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+package sh.gepetto.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.gepetto.app.model.TaskDetails;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskCacheServiceTest {
+
+    private static final FileTime MODIFIED = FileTime.fromMillis(1_700_000_000_000L);
+
+    @TempDir
+    Path dir;
+
+    private Path cacheFile;
+    private Path taskFile;
+    private final AtomicInteger parses = new AtomicInteger();
+
+    @BeforeEach
+    void writeTask() throws IOException {
+        cacheFile = dir.resolve("cache").resolve("tasks.json");
+        taskFile = dir.resolve("login.gpt");
+        write("Open the login page.");
+    }
+
+    @Test
+    void parsesAFileOnce() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+
+        assertThat(get(cache).getSteps()).containsExactly("Open the login page.");
+        assertThat(get(cache).getSteps()).containsExactly("Open the login page.");
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    void parsesAFileAgainWhenItsSizeChanges() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+
+        write("Open the login page and log in.");
+        assertThat(get(cache).getSteps()).containsExactly("Open the login page and log in.");
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void parsesAFileAgainWhenItsContentChanges() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+
+        Files.writeString(taskFile, "Open the admin page.");
+        Files.setLastModifiedTime(taskFile, FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+        assertThat(get(cache).getSteps()).containsExactly("Open the admin page.");
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void keepsTheEntryOfATouchedFile() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+
+        Files.setLastModifiedTime(taskFile, FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+        get(cache);
+        assertThat(parses).hasValue(1);
+
+        // The new modification time was stored with the entry
+        cache.flush();
+        assertThat(Files.readString(cacheFile)).contains("\"modified\":" + (MODIFIED.toMillis() + 1000));
+    }
+
+    @Test
+    void parsesAnInvalidatedFileAgain() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+
+        cache.invalidate(taskFile);
+        get(cache);
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void reusesTheEntriesOfAFlushedCache() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+        cache.flush();
+
+        TaskDetails task = get(new TaskCacheService(cacheFile));
+        assertThat(task.getName()).isEqualTo("login");
+        assertThat(task.getSteps()).containsExactly("Open the login page.");
+        assertThat(task.getStepOptions(0)).containsEntry("model", "gpt-4o");
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    void dropsTheInvalidatedEntriesOnFlush() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+        cache.flush();
+        cache.invalidate(taskFile);
+        cache.flush();
+
+        get(new TaskCacheService(cacheFile));
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void ignoresACacheOfAnotherVersion() throws IOException {
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+        cache.flush();
+        Files.writeString(cacheFile, Files.readString(cacheFile).replaceFirst("\"version\":\\d+", "\"version\":0"));
+
+        get(new TaskCacheService(cacheFile));
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void ignoresAnUnreadableCache() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Files.writeString(cacheFile, "{\"version\":");
+
+        TaskCacheService cache = new TaskCacheService(cacheFile);
+        get(cache);
+        assertThat(parses).hasValue(1);
+
+        cache.flush();
+        get(new TaskCacheService(cacheFile));
+        assertThat(parses).hasValue(1);
+    }
+
+    private TaskDetails get(TaskCacheService cache) throws IOException {
+        return cache.get(taskFile, content -> {
+            parses.incrementAndGet();
+            TaskDetails task = new TaskDetails("login", null);
+            task.addStep(new String(content, StandardCharsets.UTF_8), Map.of("model", "gpt-4o"));
+            return task;
+        });
+    }
+
+    private void write(String content) throws IOException {
+        Files.writeString(taskFile, content);
+        Files.setLastModifiedTime(taskFile, MODIFIED);
+    }
+}
@@ -0,0 +1,208 @@
+package sh.gepetto.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.gepetto.app.model.TaskDetails;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskParserTest {
+
+    @TempDir
+    Path dir;
+
+    private final TaskParser parser = new TaskParser(new TaskCacheService());
+
+    @Test
+    void readsEveryTaskOfABundle() throws IOException {
+        List<TaskDetails> tasks = parse("smoke-suite.gpt", """
+                description: "First"
+                Task:
+                  Open the home page.
+                ---
+                name: "second"
+                Task:
+                  Open the about page.
+                  Check the title.
+                ---
+                """);
+
+        assertThat(tasks).extracting(TaskDetails::getName).containsExactly("smoke suite", "second");
+        assertThat(tasks.get(0).getDescription()).isEqualTo("First");
+        assertThat(tasks.get(1).getSteps()).containsExactly("Open the about page.", "Check the title.");
+    }
+
+    @Test
+    void requiresANameOnTasksAfterTheFirst() {
+        assertThatThrownBy(() -> parse("bundle.gpt", """
+                Task:
+                  Open the home page.
+                ---
+
+                Task:
+                  Open the about page.
+                """))
+                .isInstanceOfSatisfying(TaskParseException.class, e -> {
+                    assertThat(e.getLine()).isEqualTo(5);
+                    assertThat(e.getMessage()).contains("needs a name");
+                });
+    }
+
+    @Test
+    void readsNestedStepOptions() throws IOException {
+        TaskDetails task = parseOne("options.gpt", """
+                Task:
+                  [Model: gpt-4o; tools: [browser_click, browser_snapshot]] Click the button,
+                    then wait for the dialog.
+                  Close the dialog.
+                """);
+
+        assertThat(task.getSteps()).containsExactly("Click the button, then wait for the dialog.", "Close the dialog.");
+        assertThat(task.getStepOptions(0)).containsExactly(
+                Map.entry("model", "gpt-4o"),
+                Map.entry("tools", "[browser_click, browser_snapshot]"));
+        assertThat(task.getStepOptions(1)).isEmpty();
+    }
+
+    @Test
+    void reportsTheLineAndColumnOfAnUnclosedOptionBlock() {
+        assertThatThrownBy(() -> parse("unclosed.gpt", """
+                name: "unclosed"
+                Task:
+                  Open the home page.
+                  [model: gpt-4o; tools: [browser_click] Click the button.
+                """))
+                .isInstanceOfSatisfying(TaskParseException.class, e -> {
+                    assertThat(e.getSource()).isEqualTo("unclosed.gpt");
+                    assertThat(e.getLine()).isEqualTo(4);
+                    assertThat(e.getColumn()).isEqualTo(3);
+                    assertThat(e.getMessage()).startsWith("unclosed.gpt:4:3: Unclosed '['");
+                });
+    }
+
+    @Test
+    void reportsTheColumnOfAMalformedOption() {
+        assertThatThrownBy(() -> parse("option.gpt", """
+                Task:
+                  [model: gpt-4o; fast] Click the button.
+                """))
+                .isInstanceOfSatisfying(TaskParseException.class, e -> {
+                    assertThat(e.getLine()).isEqualTo(2);
+                    assertThat(e.getColumn()).isEqualTo(18);
+                });
+    }
+
+    @Test
+    void skipsBlankAndCommentLines() throws IOException {
+        TaskDetails task = parseOne("comments.gpt", """
+                # Login checks
+
+                name: "login"
+                # owned by QA
+                Task:
+
+                  Open the login page.
+                  # the form may take a moment to show
+                  Log in.
+
+                """);
+
+        assertThat(task.getName()).isEqualTo("login");
+        assertThat(task.getSteps()).containsExactly("Open the login page.", "Log in.");
+    }
+
+    @Test
+    void acceptsTestAsAnAliasOfTask() throws IOException {
+        TaskDetails task = parseOne("legacy.test", """
+                Test:
+                  Open the home page.
+                """);
+
+        assertThat(task.getName()).isEqualTo("legacy");
+        assertThat(task.getSteps()).containsExactly("Open the home page.");
+    }
+
+    @Test
+    void readsTheSameTaskFromTextYamlAndJson() throws IOException {
+        TaskDetails text = parseOne("login.gpt", """
+                name: "login"
+                description: "Log in and out"
+                tags: [smoketest, qa]
+                author: "Laurent"
+                created: "2025-03-15"
+                requires: "admin-session"
+                depends_on: [signup]
+                tools: [browser_navigate, browser_click]
+                ticket: "QA-12"
+                metadata:
+                  owner: "qa-team"
+                Task:
+                  Navigate to ${HOSTNAME}.
+                  [model: gpt-4o] Verify the dashboard is displayed.
+                """);
+        TaskDetails yaml = parseOne("login.yaml", """
+                name: login
+                description: Log in and out
+                tags: [smoketest, qa]
+                author: Laurent
+                created: "2025-03-15"
+                requires: admin-session
+                depends_on: [signup]
+                tools: [browser_navigate, browser_click]
+                ticket: QA-12
+                metadata:
+                  owner: qa-team
+                steps:
+                  - Navigate to ${HOSTNAME}.
+                  - step: Verify the dashboard is displayed.
+                    options:
+                      Model: gpt-4o
+                """);
+        TaskDetails json = parseOne("login.json", """
+                {
+                  "name": "login",
+                  "description": "Log in and out",
+                  "tags": ["smoketest", "qa"],
+                  "author": "Laurent",
+                  "created": "2025-03-15",
+                  "requires": "admin-session",
+                  "depends_on": ["signup"],
+                  "tools": ["browser_navigate", "browser_click"],
+                  "ticket": "QA-12",
+                  "metadata": {"owner": "qa-team"},
+                  "steps": [
+                    "Navigate to ${HOSTNAME}.",
+                    {"step": "Verify the dashboard is displayed.", "options": {"model": "gpt-4o"}}
+                  ]
+                }
+                """);
+
+        assertThat(text.getCreated()).isEqualTo(LocalDateTime.of(2025, 3, 15, 0, 0));
+        assertThat(text.getMetadata()).containsOnly(Map.entry("ticket", "QA-12"), Map.entry("owner", "qa-team"));
+        assertThat(text.getStepOptions(1)).containsOnly(Map.entry("model", "gpt-4o"));
+        assertThat(yaml).usingRecursiveComparison().isEqualTo(text);
+        assertThat(json).usingRecursiveComparison().isEqualTo(text);
+    }
+
+    private TaskDetails parseOne(String fileName, String content) throws IOException {
+        List<TaskDetails> tasks = parse(fileName, content);
+        assertThat(tasks).hasSize(1);
+        return tasks.get(0);
+    }
+
+    private List<TaskDetails> parse(String fileName, String content) throws IOException {
+        Path file = Files.writeString(dir.resolve(fileName), content);
+        List<TaskDetails> tasks = new ArrayList<>();
+        parser.parseBundle(file, tasks::add);
+        return tasks;
+    }
+}